@@ -6,14 +6,34 @@ set -e
 mkdir -p openapi
 mkdir -p generated
 
-curl -u osteloff:osteloff https://swagger-ui-internal.sandbox.nva.aws.unit.no/docs/openapi.yaml -o openapi/sandbox-internal.yaml || true
-curl -u osteloff:osteloff https://swagger-ui-internal.dev.nva.aws.unit.no/docs/openapi.yaml -o openapi/dev-internal.yaml || true
-curl -u osteloff:osteloff https://swagger-ui-internal.test.nva.aws.unit.no/docs/openapi.yaml -o openapi/test-internal.yaml || true
-curl -u osteloff:osteloff https://swagger-ui-internal.nva.unit.no/docs/openapi.yaml -o openapi/prod-internal.yaml || true
-curl https://swagger-ui.sandbox.nva.aws.unit.no/docs/openapi.yaml -o openapi/sandbox-external.yaml || true
-curl https://swagger-ui.dev.nva.aws.unit.no/docs/openapi.yaml -o openapi/dev-external.yaml || true
-curl https://swagger-ui.test.nva.aws.unit.no/docs/openapi.yaml -o openapi/test-external.yaml || true
-curl https://swagger-ui.nva.unit.no/docs/openapi.yaml -o openapi/prod-external.yaml || true
+# The combined spec is published under a content-hashed key, which the manifest points to. A
+# spec that can not be fetched leaves no file behind, so its clients fail instead of being
+# generated from an older download.
+fetch_spec() {
+  site=$1
+  output=$2
+  shift 2
+  rm -f "$output"
+  manifest=$(curl -fsS "$@" "$site/docs/openapi.manifest.json") || {
+    echo "could not fetch the spec manifest from $site"
+    return 0
+  }
+  key=$(printf '%s' "$manifest" | sed -n 's/.*"yaml" *: *"\([^"]*\)".*/\1/p')
+  if [ -z "$key" ]; then
+    echo "the spec manifest from $site has no yaml version"
+    return 0
+  fi
+  curl -fsS "$@" "$site/$key" -o "$output" || echo "could not fetch $key from $site"
+}
+
+fetch_spec https://swagger-ui-internal.sandbox.nva.aws.unit.no openapi/sandbox-internal.yaml -u osteloff:osteloff
+fetch_spec https://swagger-ui-internal.dev.nva.aws.unit.no openapi/dev-internal.yaml -u osteloff:osteloff
+fetch_spec https://swagger-ui-internal.test.nva.aws.unit.no openapi/test-internal.yaml -u osteloff:osteloff
+fetch_spec https://swagger-ui-internal.nva.unit.no openapi/prod-internal.yaml -u osteloff:osteloff
+fetch_spec https://swagger-ui.sandbox.nva.aws.unit.no openapi/sandbox-external.yaml
+fetch_spec https://swagger-ui.dev.nva.aws.unit.no openapi/dev-external.yaml
+fetch_spec https://swagger-ui.test.nva.aws.unit.no openapi/test-external.yaml
+fetch_spec https://swagger-ui.nva.unit.no openapi/prod-external.yaml
 
 create_client() {
   env=$1
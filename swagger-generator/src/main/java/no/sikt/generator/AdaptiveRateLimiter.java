@@ -0,0 +1,176 @@
+package no.sikt.generator;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Client-side rate governor for a single operation. Combines a token bucket, which caps the
+ * request rate, with an AIMD concurrency limit: the limit is halved every time the service
+ * throttles us and grows by one after a full window of successful calls.
+ */
+public class AdaptiveRateLimiter {
+
+  private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+  private static final double DECREASE_FACTOR = 0.5;
+  private final String name;
+  private final double permitsPerSecond;
+  private final double burst;
+  private final int minLimit;
+  private final int maxLimit;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition available = lock.newCondition();
+  private double tokens;
+  private long lastRefillNanos;
+  private double limit;
+  private int inFlight;
+  private int successesSinceChange;
+  private long throttleCount;
+  private long acquisitions;
+  private long queueWaitNanos;
+
+  public AdaptiveRateLimiter(
+      String name, double permitsPerSecond, int burst, int initialLimit, int maxLimit) {
+    this.name = name;
+    this.permitsPerSecond = permitsPerSecond;
+    this.burst = burst;
+    this.minLimit = 1;
+    this.maxLimit = maxLimit;
+    this.limit = Math.max(minLimit, Math.min(initialLimit, maxLimit));
+    this.tokens = burst;
+    this.lastRefillNanos = System.nanoTime();
+  }
+
+  public void acquire() throws InterruptedException {
+    var start = System.nanoTime();
+    lock.lock();
+    try {
+      refill();
+      while (!canStart()) {
+        available.awaitNanos(nanosToWait());
+        refill();
+      }
+      tokens -= 1;
+      inFlight++;
+      acquisitions++;
+      queueWaitNanos += System.nanoTime() - start;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public void release() {
+    lock.lock();
+    try {
+      inFlight--;
+      available.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public void onSuccess() {
+    lock.lock();
+    try {
+      successesSinceChange++;
+      if (successesSinceChange >= getConcurrencyLimit() && limit < maxLimit) {
+        limit = Math.min(maxLimit, limit + 1);
+        successesSinceChange = 0;
+        available.signalAll();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public void onThrottle() {
+    lock.lock();
+    try {
+      throttleCount++;
+      limit = Math.max(minLimit, limit * DECREASE_FACTOR);
+      successesSinceChange = 0;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Zeroes the call, throttle and queue wait counts. The learned concurrency limit is kept, since
+   * it still describes the service.
+   */
+  public void resetStatistics() {
+    lock.lock();
+    try {
+      throttleCount = 0;
+      acquisitions = 0;
+      queueWaitNanos = 0;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public int getConcurrencyLimit() {
+    lock.lock();
+    try {
+      return (int) Math.floor(limit);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public long getThrottleCount() {
+    lock.lock();
+    try {
+      return throttleCount;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public long getAcquisitions() {
+    lock.lock();
+    try {
+      return acquisitions;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public long getQueueWaitMillis() {
+    lock.lock();
+    try {
+      return TimeUnit.NANOSECONDS.toMillis(queueWaitNanos);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return String.format(
+        "%s: %d calls, %d throttled, concurrency limit %d, queue wait %d ms",
+        name, getAcquisitions(), getThrottleCount(), getConcurrencyLimit(), getQueueWaitMillis());
+  }
+
+  private boolean canStart() {
+    return inFlight < Math.floor(limit) && tokens >= 1;
+  }
+
+  private long nanosToWait() {
+    if (tokens >= 1) {
+      return NANOS_PER_SECOND;
+    }
+    return (long) Math.ceil((1 - tokens) * NANOS_PER_SECOND / permitsPerSecond);
+  }
+
+  private void refill() {
+    var now = System.nanoTime();
+    var earned = (now - lastRefillNanos) * permitsPerSecond / NANOS_PER_SECOND;
+    tokens = Math.min(burst, tokens + earned);
+    lastRefillNanos = now;
+  }
+}
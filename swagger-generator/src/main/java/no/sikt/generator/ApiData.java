@@ -8,31 +8,35 @@ import static no.sikt.generator.ApplicationConstants.EXCLUDED_APIS;
 import io.swagger.v3.oas.models.Components;
 import io.swagger.v3.oas.models.OpenAPI;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Optional;
 import nva.commons.core.JacocoGenerated;
 import nva.commons.core.attempt.Failure;
 import nva.commons.core.attempt.Try;
-import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import software.amazon.awssdk.services.apigateway.model.RestApi;
 import software.amazon.awssdk.services.apigateway.model.Stage;
-import software.amazon.awssdk.services.s3.model.S3Object;
 
 public class ApiData {
 
   private final RestApi awsRestApi;
   private final OpenAPI openapiApiGateway;
-  private final String rawYaml;
+  private final String rawExport;
+  private final ExportFormat exportFormat;
   private final Stage stage;
   private static final Logger LOGGER = LoggerFactory.getLogger(ApiData.class);
   private OpenAPI openapiApiGithub;
 
-  public ApiData(RestApi awsRestApi, OpenAPI openapiApiGateway, String rawYaml, Stage stage) {
+  public ApiData(
+      RestApi awsRestApi,
+      OpenAPI openapiApiGateway,
+      String rawExport,
+      ExportFormat exportFormat,
+      Stage stage) {
     this.awsRestApi = awsRestApi;
     this.openapiApiGateway = openapiApiGateway;
-    this.rawYaml = rawYaml;
+    this.rawExport = rawExport;
+    this.exportFormat = exportFormat;
     this.stage = stage;
   }
 
@@ -49,13 +53,17 @@ public class ApiData {
   }
 
   public String getRawYaml() {
-    return rawYaml;
+    return exportFormat.toYaml(rawExport);
   }
 
   public String getCurrentDocVersion() {
     return stage.documentationVersion();
   }
 
+  public String getDeploymentId() {
+    return stage.deploymentId();
+  }
+
   public boolean hasCorrectDomain() {
     return openapiApiGateway.getServers().stream()
         .anyMatch(server -> server.getUrl().contains(DOMAIN));
@@ -69,14 +77,9 @@ public class ApiData {
     return Optional.ofNullable(openapiApiGithub);
   }
 
-  public void setMatchingGithubOpenapi(List<Pair<S3Object, OpenAPI>> templateOpenapiDocs) {
+  public void setMatchingGithubOpenapi(TemplateIndex templateIndex) {
     var title = this.openapiApiGateway.getInfo().getTitle();
-    var matchingGithubOpenApi =
-        templateOpenapiDocs.stream()
-            .filter(
-                templateOpenapiDoc ->
-                    templateOpenapiDoc.getRight().getInfo().getTitle().equals(title))
-            .findFirst();
+    var matchingGithubOpenApi = templateIndex.findByTitle(title);
     if (matchingGithubOpenApi.isPresent()) {
       LOGGER.info(
           "Using matching github openapi at "
@@ -16,13 +16,17 @@ public final class ApiGatewayAsyncClientSupplier {
   private ApiGatewayAsyncClientSupplier() {}
 
   public static Supplier<ApiGatewayAsyncClient> getSupplier() {
+    return AwsClientRegistry.getInstance()
+        .shared(ApiGatewayAsyncClient.class, ApiGatewayAsyncClientSupplier::createClient);
+  }
+
+  private static ApiGatewayAsyncClient createClient() {
     var clientOverrideConfiguration = ClientOverrideConfiguration.builder().build();
 
-    return () ->
-        ApiGatewayAsyncClient.builder()
-            .overrideConfiguration(clientOverrideConfiguration)
-            .region(Region.of(new Environment().readEnv(AWS_REGION_ENV)))
-            .credentialsProvider(DefaultCredentialsProvider.create())
-            .build();
+    return ApiGatewayAsyncClient.builder()
+        .overrideConfiguration(clientOverrideConfiguration)
+        .region(Region.of(new Environment().readEnv(AWS_REGION_ENV)))
+        .credentialsProvider(DefaultCredentialsProvider.create())
+        .build();
   }
 }
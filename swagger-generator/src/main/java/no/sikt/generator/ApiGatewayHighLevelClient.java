@@ -1,43 +1,90 @@
 package no.sikt.generator;
 
+import static java.util.Objects.isNull;
 import static java.util.Objects.nonNull;
-import static no.sikt.generator.ApplicationConstants.APPLICATION_YAML;
 import static no.sikt.generator.ApplicationConstants.EXPORT_TYPE_OA_3;
+import static no.sikt.generator.ParallelMapper.VIRTUAL_THREADS;
 import static nva.commons.core.attempt.Try.attempt;
 
-import io.swagger.v3.parser.OpenAPIV3Parser;
 import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import software.amazon.awssdk.services.apigateway.ApiGatewayAsyncClient;
 import software.amazon.awssdk.services.apigateway.model.CreateDocumentationVersionRequest;
+import software.amazon.awssdk.services.apigateway.model.DocumentationPart;
 import software.amazon.awssdk.services.apigateway.model.GetDocumentationPartsRequest;
+import software.amazon.awssdk.services.apigateway.model.GetDocumentationPartsResponse;
 import software.amazon.awssdk.services.apigateway.model.GetDocumentationVersionsRequest;
 import software.amazon.awssdk.services.apigateway.model.GetDocumentationVersionsResponse;
 import software.amazon.awssdk.services.apigateway.model.GetExportRequest;
 import software.amazon.awssdk.services.apigateway.model.GetRestApisRequest;
 import software.amazon.awssdk.services.apigateway.model.GetRestApisResponse;
-import software.amazon.awssdk.services.apigateway.model.GetStagesRequest;
+import software.amazon.awssdk.services.apigateway.model.GetStageRequest;
+import software.amazon.awssdk.services.apigateway.model.GetStageResponse;
+import software.amazon.awssdk.services.apigateway.model.NotFoundException;
 import software.amazon.awssdk.services.apigateway.model.Op;
 import software.amazon.awssdk.services.apigateway.model.PatchOperation;
 import software.amazon.awssdk.services.apigateway.model.RestApi;
 import software.amazon.awssdk.services.apigateway.model.Stage;
+import software.amazon.awssdk.services.apigateway.model.TooManyRequestsException;
 import software.amazon.awssdk.services.apigateway.model.UpdateStageRequest;
 
 public class ApiGatewayHighLevelClient {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(ApiGatewayHighLevelClient.class);
   public static final String DOCUMENTATION_VERSION_PATH = "/documentationVersion";
+  public static final String CONTENT_LENGTH = "Content-Length";
   public static final int MAX_API_LIMIT = 500;
   public static final int LIMIT = 500;
+  public static final String GET_REST_APIS = "getRestApis";
+  public static final String GET_EXPORT = "getExport";
+  public static final String GET_STAGE = "getStage";
+  public static final String UPDATE_STAGE = "updateStage";
+  public static final String GET_DOCUMENTATION_VERSIONS = "getDocumentationVersions";
+  public static final String GET_DOCUMENTATION_PARTS = "getDocumentationParts";
+  public static final String CREATE_DOCUMENTATION_VERSION = "createDocumentationVersion";
+  public static final double PERMITS_PER_SECOND = 5;
+  public static final int BURST = 10;
+  public static final int INITIAL_CONCURRENCY_LIMIT = 4;
+  public static final int MAX_CONCURRENCY_LIMIT = 16;
+  public static final int MAX_ATTEMPTS = 8;
+  public static final long BASE_BACKOFF_MILLIS = 100;
+  public static final long MAX_BACKOFF_MILLIS = 5000;
   private final Supplier<ApiGatewayAsyncClient> clientSupplier;
+  private final Map<String, AdaptiveRateLimiter> rateLimiters = new ConcurrentHashMap<>();
+  private final ExportCache exportCache;
+  private final ParsedOpenApiCache parsedOpenApiCache = ParsedOpenApiCache.getInstance();
+  private final Map<String, DeploymentFingerprint> documentationFingerprints =
+      new ConcurrentHashMap<>();
+  private final AtomicLong stageLookups = new AtomicLong();
+  private final AtomicLong stagesNotFound = new AtomicLong();
+  private final AtomicLong stageBytesReceived = new AtomicLong();
 
   public ApiGatewayHighLevelClient(Supplier<ApiGatewayAsyncClient> clientSupplier) {
+    this(clientSupplier, ExportCache.inMemory());
+  }
+
+  public ApiGatewayHighLevelClient(
+      Supplier<ApiGatewayAsyncClient> clientSupplier, ExportCache exportCache) {
     this.clientSupplier = clientSupplier;
+    this.exportCache = exportCache;
   }
 
   public String fetchApiExport(String apiId, String stage, String contentType, String exportType) {
@@ -49,15 +96,29 @@ public class ApiGatewayHighLevelClient {
             .exportType(exportType)
             .build();
 
-    var export = execute(client -> client.getExport(getExportRequest));
+    var export = execute(GET_EXPORT, client -> client.getExport(getExportRequest));
 
     return export.body().asString(StandardCharsets.UTF_8);
   }
 
-  public List<Stage> fetchStages(String apiId) {
-    var request = GetStagesRequest.builder().restApiId(apiId).build();
-    var stages = execute(client -> client.getStages(request));
-    return stages.item();
+  /**
+   * Looks up a single stage with GetStage instead of listing every stage of the API. A missing
+   * stage is an expected outcome and results in an empty Optional.
+   */
+  public Optional<Stage> fetchStage(String apiId, String stageName) {
+    var request = GetStageRequest.builder().restApiId(apiId).stageName(stageName).build();
+    stageLookups.incrementAndGet();
+    try {
+      var response = execute(GET_STAGE, client -> client.getStage(request));
+      stageBytesReceived.addAndGet(contentLength(response));
+      return Optional.of(toStage(response));
+    } catch (RuntimeException e) {
+      if (hasCause(e, NotFoundException.class)) {
+        stagesNotFound.incrementAndGet();
+        return Optional.empty();
+      }
+      throw e;
+    }
   }
 
   public void setStageDocVersion(String apiId, String stage, String docVersion) {
@@ -73,56 +134,220 @@ public class ApiGatewayHighLevelClient {
                     .build())
             .build();
 
-    execute(client -> client.updateStage(request));
+    execute(UPDATE_STAGE, client -> client.updateStage(request));
   }
 
-  public ApiData fetchApiDataForStage(
-      RestApi api, String stageName, OpenAPIV3Parser openApiParser) {
-    var stages = fetchStages(api.id());
-    var productionStage =
-        stages.stream().filter(s -> stageName.equals(s.stageName())).findFirst().orElse(null);
+  public ApiData fetchApiDataForStage(RestApi api, String stageName, ExportFormat format) {
+    var productionStage = fetchStage(api.id(), stageName);
 
-    if (nonNull(productionStage)) {
-      var yaml = fetchApiExport(api.id(), stageName, APPLICATION_YAML, EXPORT_TYPE_OA_3);
-      var parseResult = openApiParser.readContents(yaml);
-      return new ApiData(api, parseResult.getOpenAPI(), yaml, productionStage);
+    if (productionStage.isPresent()) {
+      var export =
+          exportCache.getOrFetch(
+              api.id(),
+              productionStage.get(),
+              format,
+              () ->
+                  fetchApiExport(api.id(), stageName, format.getContentType(), EXPORT_TYPE_OA_3));
+      var openApi = parsedOpenApiCache.parse(export, format);
+      return new ApiData(api, openApi, export, format, productionStage.get());
     } else {
-      LOGGER.warn(
-          "API {} ({}) does not have stage {}. Stages found: {}",
-          api.name(),
-          api.id(),
-          stageName,
-          stages);
+      LOGGER.warn("API {} ({}) does not have stage {}", api.name(), api.id(), stageName);
       return null;
     }
   }
 
-  public GetRestApisResponse getRestApis() {
-    var request = GetRestApisRequest.builder().limit(MAX_API_LIMIT).build();
+  /**
+   * Streams every RestApi in the account, following the {@code position} token page by page. The
+   * next page is requested as soon as the current one arrives, so consumers can start working on
+   * the first page while later pages are still loading.
+   */
+  public Stream<RestApi> streamRestApis() {
+    var pages = new RestApiPages(fetchRestApiPage(null));
+    return StreamSupport.stream(
+            Spliterators.spliteratorUnknownSize(pages, Spliterator.ORDERED | Spliterator.NONNULL),
+            false)
+        .flatMap(page -> page.items().stream());
+  }
+
+  private CompletableFuture<GetRestApisResponse> fetchRestApiPage(String position) {
+    var request = GetRestApisRequest.builder().limit(MAX_API_LIMIT).position(position).build();
+    return CompletableFuture.supplyAsync(
+        () -> execute(GET_REST_APIS, client -> client.getRestApis(request)), VIRTUAL_THREADS);
+  }
+
+  public List<AdaptiveRateLimiter> getRateLimiters() {
+    return List.copyOf(rateLimiters.values());
+  }
+
+  public void resetStatistics() {
+    rateLimiters.values().forEach(AdaptiveRateLimiter::resetStatistics);
+    exportCache.resetStatistics();
+    parsedOpenApiCache.resetStatistics();
+    stageLookups.set(0);
+    stagesNotFound.set(0);
+    stageBytesReceived.set(0);
+  }
+
+  public void logStatistics() {
+    rateLimiters.values().forEach(limiter -> LOGGER.info("API Gateway {}", limiter));
+    exportCache.logStatistics();
+    parsedOpenApiCache.logStatistics();
+    LOGGER.info(
+        "Stage lookups: {} GetStage calls ({} without the stage), {} bytes received",
+        stageLookups.get(),
+        stagesNotFound.get(),
+        stageBytesReceived.get());
+  }
+
+  /**
+   * Runs a control-plane call under the rate limiter of its operation. Throttled calls shrink the
+   * operation's concurrency and are retried with exponential backoff and full jitter.
+   */
+  private <T> T execute(
+      String operation, Function<ApiGatewayAsyncClient, CompletableFuture<T>> call) {
+    var limiter = rateLimiters.computeIfAbsent(operation, this::createRateLimiter);
+    for (var attemptNumber = 1; ; attemptNumber++) {
+      var response = attemptOnce(limiter, call);
+      if (response.isPresent()) {
+        return response.get();
+      }
+      if (attemptNumber >= MAX_ATTEMPTS) {
+        throw new IllegalStateException(
+            operation + " was throttled " + MAX_ATTEMPTS + " times in a row, giving up");
+      }
+      LOGGER.warn("{} was throttled, backing off (attempt {})", operation, attemptNumber);
+      sleep(backoffMillis(attemptNumber));
+    }
+  }
+
+  private <T> Optional<T> attemptOnce(
+      AdaptiveRateLimiter limiter, Function<ApiGatewayAsyncClient, CompletableFuture<T>> call) {
+    acquire(limiter);
+    try {
+      var response = call.apply(clientSupplier.get()).get();
+      limiter.onSuccess();
+      return Optional.of(response);
+    } catch (ExecutionException e) {
+      if (isThrottled(e)) {
+        limiter.onThrottle();
+        return Optional.empty();
+      }
+      throw new RuntimeException(e);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } finally {
+      limiter.release();
+    }
+  }
 
-    return execute(client -> client.getRestApis(request));
+  private static void acquire(AdaptiveRateLimiter limiter) {
+    try {
+      limiter.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
   }
 
-  private <T> T execute(Function<ApiGatewayAsyncClient, CompletableFuture<T>> call) {
-    try (var apiGatewayClient = clientSupplier.get()) {
-      return attempt(() -> call.apply(apiGatewayClient).get()).orElseThrow();
+  private AdaptiveRateLimiter createRateLimiter(String operation) {
+    return new AdaptiveRateLimiter(
+        operation, PERMITS_PER_SECOND, BURST, INITIAL_CONCURRENCY_LIMIT, MAX_CONCURRENCY_LIMIT);
+  }
+
+  private static boolean isThrottled(Throwable throwable) {
+    return hasCause(throwable, TooManyRequestsException.class);
+  }
+
+  private static boolean hasCause(Throwable throwable, Class<? extends Throwable> type) {
+    for (var cause = throwable; nonNull(cause); cause = cause.getCause()) {
+      if (type.isInstance(cause)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean hasMorePages(String position) {
+    return nonNull(position) && !position.isEmpty();
+  }
+
+  private static long contentLength(GetStageResponse response) {
+    return Optional.ofNullable(response.sdkHttpResponse())
+        .flatMap(httpResponse -> httpResponse.firstMatchingHeader(CONTENT_LENGTH))
+        .map(Long::parseLong)
+        .orElse(0L);
+  }
+
+  private static Stage toStage(GetStageResponse response) {
+    return Stage.builder()
+        .stageName(response.stageName())
+        .deploymentId(response.deploymentId())
+        .documentationVersion(response.documentationVersion())
+        .description(response.description())
+        .createdDate(response.createdDate())
+        .lastUpdatedDate(response.lastUpdatedDate())
+        .build();
+  }
+
+  private static long backoffMillis(int attempt) {
+    var ceiling = Math.min(MAX_BACKOFF_MILLIS, BASE_BACKOFF_MILLIS << Math.min(attempt, 16));
+    return ThreadLocalRandom.current().nextLong(ceiling + 1);
+  }
+
+  private static void sleep(long millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
     }
   }
 
   public GetDocumentationVersionsResponse fetchVersions(String id) {
     var listRequest = GetDocumentationVersionsRequest.builder().restApiId(id).limit(LIMIT).build();
 
-    return execute(client -> client.getDocumentationVersions(listRequest));
+    return execute(
+        GET_DOCUMENTATION_VERSIONS, client -> client.getDocumentationVersions(listRequest));
   }
 
-  public int fetchDocumentationPartsHash(String apiId) {
+  /**
+   * Returns the {@link DocumentationFingerprint} of all documentation parts of the API, following
+   * every page. The result is memoized for the latest deployment of each API, so warm invocations
+   * do not page through the parts of an API that has not been redeployed.
+   */
+  public String fetchDocumentationFingerprint(String apiId, String deploymentId) {
+    if (isNull(deploymentId)) {
+      return DocumentationFingerprint.of(streamDocumentationParts(apiId));
+    }
+    var memoized = documentationFingerprints.get(apiId);
+    if (nonNull(memoized) && memoized.deploymentId().equals(deploymentId)) {
+      return memoized.fingerprint();
+    }
+    var fingerprint = DocumentationFingerprint.of(streamDocumentationParts(apiId));
+    documentationFingerprints.put(apiId, new DeploymentFingerprint(deploymentId, fingerprint));
+    return fingerprint;
+  }
 
-    var getDocumentationVersionRequest =
-        GetDocumentationPartsRequest.builder().restApiId(apiId).limit(LIMIT).build();
-    var documentParts =
-        execute(client -> client.getDocumentationParts(getDocumentationVersionRequest));
+  public Stream<DocumentationPart> streamDocumentationParts(String apiId) {
+    return Stream.iterate(
+            fetchDocumentationPartsPage(apiId, null),
+            Objects::nonNull,
+            page ->
+                hasMorePages(page.position())
+                    ? fetchDocumentationPartsPage(apiId, page.position())
+                    : null)
+        .flatMap(page -> page.items().stream());
+  }
 
-    return documentParts.items().hashCode();
+  private GetDocumentationPartsResponse fetchDocumentationPartsPage(String apiId, String position) {
+    var request =
+        GetDocumentationPartsRequest.builder()
+            .restApiId(apiId)
+            .limit(LIMIT)
+            .position(position)
+            .build();
+    return execute(GET_DOCUMENTATION_PARTS, client -> client.getDocumentationParts(request));
   }
 
   public void createDocumentation(String id, String version, String stage) {
@@ -133,6 +358,37 @@ public class ApiGatewayHighLevelClient {
             .documentationVersion(version)
             .build();
 
-    execute(client -> client.createDocumentationVersion(createRequest));
+    execute(
+        CREATE_DOCUMENTATION_VERSION, client -> client.createDocumentationVersion(createRequest));
+  }
+
+  private record DeploymentFingerprint(String deploymentId, String fingerprint) {}
+
+  private final class RestApiPages implements Iterator<GetRestApisResponse> {
+
+    private CompletableFuture<GetRestApisResponse> nextPage;
+
+    private RestApiPages(CompletableFuture<GetRestApisResponse> firstPage) {
+      this.nextPage = firstPage;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return nonNull(nextPage);
+    }
+
+    @Override
+    public GetRestApisResponse next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      var page = attempt(nextPage::get).orElseThrow();
+      nextPage = hasMorePages(page.position()) ? fetchRestApiPage(page.position()) : null;
+      LOGGER.info(
+          "Fetched {} RestApis: {}",
+          page.items().size(),
+          page.items().stream().map(RestApi::name).toList());
+      return page;
+    }
   }
 }
@@ -14,6 +14,7 @@ public final class ApplicationConstants {
   public static final Environment ENVIRONMENT = new Environment();
   public static final String EXTERNAL_BUCKET_NAME = readExternalBucketName();
   public static final String INTERNAL_BUCKET_NAME = readInternalBucketName();
+  public static final String EXPORT_CACHE_BUCKET_NAME = readExportCacheBucketName();
   public static final String EXTERNAL_CLOUD_FRONT_DISTRIBUTION =
       readExternalCloudFrontDistributionId();
   public static final String INTERNAL_CLOUD_FRONT_DISTRIBUTION =
@@ -21,6 +22,16 @@ public final class ApplicationConstants {
   public static final String DOMAIN = readDomain();
 
   public static final List<String> EXCLUDED_APIS = readExcludedApis();
+  public static final int DEFAULT_API_FETCH_CONCURRENCY = 8;
+  public static final int API_FETCH_CONCURRENCY = readApiFetchConcurrency();
+  public static final ExportFormat EXPORT_FORMAT = readExportFormat();
+  public static final int DEFAULT_MAX_INVALIDATION_PATHS = 10;
+  public static final int MAX_INVALIDATION_PATHS = readMaxInvalidationPaths();
+  public static final String DEFAULT_SPEC_CACHE_CONTROL = "public, max-age=300, s-maxage=31536000";
+  public static final String SPEC_CACHE_CONTROL = readSpecCacheControl();
+  public static final int DEFAULT_SPEC_RETENTION_DAYS = 30;
+  public static final int SPEC_RETENTION_DAYS = readSpecRetentionDays();
+  public static final CombineMode COMBINE_MODE = readCombineMode();
 
   private ApplicationConstants() {}
 
@@ -32,6 +43,10 @@ public final class ApplicationConstants {
     return ENVIRONMENT.readEnv("INTERNAL_BUCKET_NAME");
   }
 
+  private static String readExportCacheBucketName() {
+    return ENVIRONMENT.readEnv("EXPORT_CACHE_BUCKET_NAME");
+  }
+
   public static String readOpenApiBucketName() {
     return ENVIRONMENT.readEnv("OPEN_API_DOCS_BUCKET_NAME");
   }
@@ -48,6 +63,45 @@ public final class ApplicationConstants {
     return ENVIRONMENT.readEnv("DOMAIN");
   }
 
+  private static int readApiFetchConcurrency() {
+    return ENVIRONMENT
+        .readEnvOpt("API_FETCH_CONCURRENCY")
+        .map(Integer::parseInt)
+        .orElse(DEFAULT_API_FETCH_CONCURRENCY);
+  }
+
+  private static ExportFormat readExportFormat() {
+    return ENVIRONMENT
+        .readEnvOpt("EXPORT_FORMAT")
+        .map(ExportFormat::valueOf)
+        .orElse(ExportFormat.JSON);
+  }
+
+  private static int readMaxInvalidationPaths() {
+    return ENVIRONMENT
+        .readEnvOpt("MAX_INVALIDATION_PATHS")
+        .map(Integer::parseInt)
+        .orElse(DEFAULT_MAX_INVALIDATION_PATHS);
+  }
+
+  private static String readSpecCacheControl() {
+    return ENVIRONMENT.readEnvOpt("SPEC_CACHE_CONTROL").orElse(DEFAULT_SPEC_CACHE_CONTROL);
+  }
+
+  private static int readSpecRetentionDays() {
+    return ENVIRONMENT
+        .readEnvOpt("SPEC_RETENTION_DAYS")
+        .map(Integer::parseInt)
+        .orElse(DEFAULT_SPEC_RETENTION_DAYS);
+  }
+
+  private static CombineMode readCombineMode() {
+    return ENVIRONMENT
+        .readEnvOpt("COMBINE_MODE")
+        .map(CombineMode::valueOf)
+        .orElse(CombineMode.PARALLEL);
+  }
+
   private static List<String> readExcludedApis() {
     return Arrays.stream(ENVIRONMENT.readEnv("EXCLUDED_APIS").split(","))
         .collect(Collectors.toList());
@@ -0,0 +1,83 @@
+package no.sikt.generator;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import nva.commons.core.JacocoGenerated;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Container-scoped registry of AWS SDK clients. Every client type is built once per JVM, shared
+ * across warm Lambda invocations and closed when the runtime shuts down.
+ */
+public final class AwsClientRegistry {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(AwsClientRegistry.class);
+  private static final AwsClientRegistry INSTANCE = createInstance();
+  private final Map<Class<?>, AutoCloseable> clients = new ConcurrentHashMap<>();
+  private final AtomicLong opened = new AtomicLong();
+  private final AtomicLong reused = new AtomicLong();
+
+  public AwsClientRegistry() {}
+
+  public static AwsClientRegistry getInstance() {
+    return INSTANCE;
+  }
+
+  @JacocoGenerated
+  private static AwsClientRegistry createInstance() {
+    var registry = new AwsClientRegistry();
+    Runtime.getRuntime().addShutdownHook(new Thread(registry::closeAll));
+    return registry;
+  }
+
+  public <T extends AutoCloseable> Supplier<T> shared(Class<T> type, Supplier<T> factory) {
+    return () -> get(type, factory);
+  }
+
+  public <T extends AutoCloseable> T get(Class<T> type, Supplier<T> factory) {
+    var created = new AtomicBoolean(false);
+    var client =
+        clients.computeIfAbsent(
+            type,
+            key -> {
+              created.set(true);
+              opened.incrementAndGet();
+              LOGGER.info("Opening shared client {}", key.getSimpleName());
+              return factory.get();
+            });
+    if (!created.get()) {
+      reused.incrementAndGet();
+    }
+    return type.cast(client);
+  }
+
+  public long getOpenedCount() {
+    return opened.get();
+  }
+
+  public long getReusedCount() {
+    return reused.get();
+  }
+
+  public void logStatistics() {
+    LOGGER.info("AWS clients opened: {}, reused: {}", getOpenedCount(), getReusedCount());
+  }
+
+  public void closeAll() {
+    clients
+        .values()
+        .forEach(
+            client -> {
+              try {
+                client.close();
+              } catch (Exception e) {
+                LOGGER.warn("Failed to close client", e);
+              }
+            });
+    clients.clear();
+  }
+}
@@ -0,0 +1,283 @@
+package no.sikt.generator;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static no.sikt.generator.ParallelMapper.VIRTUAL_THREADS;
+import static nva.commons.core.attempt.Try.attempt;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+/**
+ * Writes generated files to S3 only when their content changed. The SHA-256 of every uploaded file
+ * is stored in its object metadata and remembered in memory, so an identical file is detected with
+ * at most a HEAD request and never uploaded again. Anything that can not be compared is treated as
+ * changed. Every encoding of a file is stored with the hash of the unencoded content, so the
+ * encodings are compared and skipped independently of each other.
+ */
+public class ChangeDetectingWriter {
+
+  public static final String CONTENT_HASH_METADATA = "content-sha256";
+  private static final Logger LOGGER = LoggerFactory.getLogger(ChangeDetectingWriter.class);
+  private final S3Client s3Client;
+  private final String cacheControl;
+  private final Map<String, String> publishedHashes = new ConcurrentHashMap<>();
+  private final AtomicLong written = new AtomicLong();
+  private final AtomicLong skipped = new AtomicLong();
+
+  public ChangeDetectingWriter(S3Client s3Client, String cacheControl) {
+    this.s3Client = s3Client;
+    this.cacheControl = cacheControl;
+  }
+
+  /**
+   * Uploads {@code content} in each of the given encodings, unless the object already holds
+   * exactly this content. The encodings are compressed and uploaded in parallel.
+   *
+   * @return the keys that were written
+   */
+  public List<String> write(
+      String bucket, String key, String content, Collection<ContentEncoding> encodings) {
+    var bytes = content.getBytes(UTF_8);
+    var hash = hex(newDigest().digest(bytes));
+    return inParallel(
+        encodings,
+        encoding ->
+            writeIfChanged(
+                bucket, encoding.toKey(key), hash, () -> put(bucket, key, encoding, hash, bytes)));
+  }
+
+  /** SHA-256 of {@code model} serialized in the given format, computed without holding it. */
+  public String hash(Object model, ExportFormat format) {
+    var digest = newDigest();
+    serialize(model, format, new DigestOutputStream(OutputStream.nullOutputStream(), digest));
+    return hex(digest.digest());
+  }
+
+  /**
+   * Serializes {@code model} in the given format straight into an S3 upload per encoding, unless
+   * the object already holds the document with the given {@link #hash}. The document is serialized
+   * once for all encodings that changed, and is never held in memory as a whole. When serializing
+   * fails, every upload is aborted, so no truncated object is ever published with the hash.
+   *
+   * @return the keys that were written
+   */
+  public List<String> writeModel(
+      String bucket,
+      String key,
+      Object model,
+      ExportFormat format,
+      String hash,
+      Collection<ContentEncoding> encodings) {
+    var changed =
+        inParallel(
+            encodings,
+            encoding ->
+                isUnchanged(bucket, encoding.toKey(key), hash)
+                    ? Optional.empty()
+                    : Optional.of(encoding));
+    if (changed.isEmpty()) {
+      return List.of();
+    }
+    var start = System.nanoTime();
+    var uploaded = upload(bucket, key, changed, hash, model, format);
+    LOGGER.info(
+        "Serialized {}/{} in {} ms, {} bytes uploaded",
+        bucket,
+        key,
+        Duration.ofNanos(System.nanoTime() - start).toMillis(),
+        uploaded);
+    var keys = changed.stream().map(encoding -> encoding.toKey(key)).toList();
+    keys.forEach(encodedKey -> recordWritten(bucket, encodedKey, hash));
+    return keys;
+  }
+
+  public long getWritten() {
+    return written.get();
+  }
+
+  public long getSkipped() {
+    return skipped.get();
+  }
+
+  public void logStatistics() {
+    LOGGER.info("S3 writes: {} written, {} avoided as unchanged", getWritten(), getSkipped());
+  }
+
+  private static <T> List<T> inParallel(
+      Collection<ContentEncoding> encodings, Function<ContentEncoding, Optional<T>> action) {
+    var results =
+        encodings.stream()
+            .map(
+                encoding ->
+                    CompletableFuture.supplyAsync(() -> action.apply(encoding), VIRTUAL_THREADS))
+            .toList();
+    return results.stream().map(CompletableFuture::join).flatMap(Optional::stream).toList();
+  }
+
+  private Optional<String> writeIfChanged(String bucket, String key, String hash, Runnable upload) {
+    if (isUnchanged(bucket, key, hash)) {
+      return Optional.empty();
+    }
+    upload.run();
+    recordWritten(bucket, key, hash);
+    return Optional.of(key);
+  }
+
+  private boolean isUnchanged(String bucket, String key, String hash) {
+    var location = bucket + "/" + key;
+    var publishedHash =
+        Optional.ofNullable(publishedHashes.get(location)).or(() -> readPublishedHash(bucket, key));
+    if (publishedHash.filter(hash::equals).isPresent()) {
+      publishedHashes.put(location, hash);
+      skipped.incrementAndGet();
+      LOGGER.info("{} is unchanged - not writing", location);
+      return true;
+    }
+    return false;
+  }
+
+  private void recordWritten(String bucket, String key, String hash) {
+    publishedHashes.put(bucket + "/" + key, hash);
+    written.incrementAndGet();
+  }
+
+  private ObjectHeaders headers(String key, ContentEncoding encoding, String hash) {
+    return new ObjectHeaders(
+        ExportFormat.contentTypeOf(key).orElse(null),
+        encoding.getHeaderValue(),
+        cacheControl,
+        Map.of(CONTENT_HASH_METADATA, hash));
+  }
+
+  /**
+   * Streams one serialization of {@code model} into an upload per encoding, and commits the uploads
+   * only once it succeeded.
+   *
+   * @return the number of bytes uploaded
+   */
+  @SuppressWarnings("PMD.CloseResource")
+  private long upload(
+      String bucket,
+      String key,
+      List<ContentEncoding> encodings,
+      String hash,
+      Object model,
+      ExportFormat format) {
+    var uploads =
+        encodings.stream()
+            .map(
+                encoding ->
+                    new S3UploadOutputStream(
+                        s3Client, bucket, encoding.toKey(key), headers(key, encoding, hash)))
+            .toList();
+    var outputs = new ArrayList<OutputStream>();
+    try {
+      for (var i = 0; i < encodings.size(); i++) {
+        var encoding = encodings.get(i);
+        var upload = uploads.get(i);
+        outputs.add(attempt(() -> encoding.encode(upload)).orElseThrow());
+      }
+      serialize(model, format, new TeeOutputStream(outputs));
+    } catch (RuntimeException e) {
+      uploads.forEach(S3UploadOutputStream::abort);
+      throw e;
+    }
+    outputs.forEach(ChangeDetectingWriter::commit);
+    return uploads.stream().mapToLong(S3UploadOutputStream::getBytesWritten).sum();
+  }
+
+  private static void commit(OutputStream output) {
+    attempt(
+            () -> {
+              output.close();
+              return null;
+            })
+        .orElseThrow();
+  }
+
+  private static void serialize(Object model, ExportFormat format, OutputStream output) {
+    attempt(
+            () -> {
+              format.writer().writeValue(output, model);
+              return null;
+            })
+        .orElseThrow();
+  }
+
+  private void put(
+      String bucket, String key, ContentEncoding encoding, String hash, byte[] content) {
+    var encoded = attempt(() -> encoding.encode(content)).orElseThrow();
+    var request =
+        headers(key, encoding, hash)
+            .applyTo(PutObjectRequest.builder().bucket(bucket).key(encoding.toKey(key)))
+            .build();
+    s3Client.putObject(request, RequestBody.fromBytes(encoded));
+  }
+
+  private Optional<String> readPublishedHash(String bucket, String key) {
+    var request = HeadObjectRequest.builder().bucket(bucket).key(key).build();
+    return attempt(() -> s3Client.headObject(request).metadata().get(CONTENT_HASH_METADATA))
+        .toOptional();
+  }
+
+  private static MessageDigest newDigest() {
+    return attempt(() -> MessageDigest.getInstance("SHA-256")).orElseThrow();
+  }
+
+  private static String hex(byte[] digest) {
+    return HexFormat.of().formatHex(digest);
+  }
+
+  /**
+   * Writes everything to each of the targets. Closing it leaves the targets open, because Jackson
+   * closes the stream it writes to, also when it fails, and closing an upload commits it.
+   */
+  private static final class TeeOutputStream extends OutputStream {
+
+    private final List<OutputStream> targets;
+
+    private TeeOutputStream(List<OutputStream> targets) {
+      this.targets = targets;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      for (var target : targets) {
+        target.write(b);
+      }
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+      for (var target : targets) {
+        target.write(bytes, offset, length);
+      }
+    }
+
+    @Override
+    public void flush() throws IOException {
+      for (var target : targets) {
+        target.flush();
+      }
+    }
+  }
+}
@@ -12,10 +12,14 @@ public final class CloudFrontClientSupplier {
   private CloudFrontClientSupplier() {}
 
   public static Supplier<CloudFrontClient> getSupplier() {
-    return () ->
-        CloudFrontClient.builder()
-            .httpClient(UrlConnectionHttpClient.builder().build())
-            .region(AWS_GLOBAL)
-            .build();
+    return AwsClientRegistry.getInstance()
+        .shared(CloudFrontClient.class, CloudFrontClientSupplier::createClient);
+  }
+
+  private static CloudFrontClient createClient() {
+    return CloudFrontClient.builder()
+        .httpClient(UrlConnectionHttpClient.builder().build())
+        .region(AWS_GLOBAL)
+        .build();
   }
 }
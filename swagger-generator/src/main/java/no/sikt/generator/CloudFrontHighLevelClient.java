@@ -1,33 +1,71 @@
 package no.sikt.generator;
 
+import static no.sikt.generator.ApplicationConstants.MAX_INVALIDATION_PATHS;
+
+import java.util.Collection;
+import java.util.List;
 import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import software.amazon.awssdk.services.cloudfront.CloudFrontClient;
 import software.amazon.awssdk.services.cloudfront.model.CreateInvalidationRequest;
 
 public class CloudFrontHighLevelClient {
 
   public static final String ALL_FILES = "/*";
+  private static final Logger LOGGER = LoggerFactory.getLogger(CloudFrontHighLevelClient.class);
   private final Supplier<CloudFrontClient> cloudFrontClientSupplier;
+  private final int maxInvalidationPaths;
 
   public CloudFrontHighLevelClient(Supplier<CloudFrontClient> cloudFrontClientSupplier) {
+    this(cloudFrontClientSupplier, MAX_INVALIDATION_PATHS);
+  }
+
+  public CloudFrontHighLevelClient(
+      Supplier<CloudFrontClient> cloudFrontClientSupplier, int maxInvalidationPaths) {
     this.cloudFrontClientSupplier = cloudFrontClientSupplier;
+    this.maxInvalidationPaths = maxInvalidationPaths;
   }
 
   public void invalidateAll(String distributionId) {
-    try (var cloudFrontClient = cloudFrontClientSupplier.get()) {
-      var request =
-          CreateInvalidationRequest.builder()
-              .distributionId(distributionId)
-              .invalidationBatch(
-                  batch ->
-                      batch
-                          .paths(paths -> paths.items(ALL_FILES).quantity(1))
-                          .callerReference(getCallerReference()))
-              .build();
-      cloudFrontClient.createInvalidation(request);
+    createInvalidation(distributionId, List.of(ALL_FILES));
+  }
+
+  /**
+   * Invalidates the given object keys in one batch. Above the configured path count a single
+   * wildcard is cheaper, so the whole distribution is invalidated instead.
+   */
+  public void invalidateKeys(String distributionId, Collection<String> keys) {
+    var paths = keys.stream().map(key -> "/" + key).distinct().sorted().toList();
+    if (paths.isEmpty()) {
+      return;
+    }
+    if (paths.size() > maxInvalidationPaths) {
+      LOGGER.info(
+          "{} changed paths exceed {} - invalidating {}",
+          paths.size(),
+          maxInvalidationPaths,
+          ALL_FILES);
+      invalidateAll(distributionId);
+    } else {
+      LOGGER.info("Invalidating {} on {}", paths, distributionId);
+      createInvalidation(distributionId, paths);
     }
   }
 
+  private void createInvalidation(String distributionId, List<String> paths) {
+    var request =
+        CreateInvalidationRequest.builder()
+            .distributionId(distributionId)
+            .invalidationBatch(
+                batch ->
+                    batch
+                        .paths(items -> items.items(paths).quantity(paths.size()))
+                        .callerReference(getCallerReference()))
+            .build();
+    cloudFrontClientSupplier.get().createInvalidation(request);
+  }
+
   private static String getCallerReference() {
     return "swagger-generator-" + System.currentTimeMillis();
   }
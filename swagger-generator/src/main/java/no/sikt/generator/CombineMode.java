@@ -0,0 +1,82 @@
+package no.sikt.generator;
+
+import static no.sikt.generator.ParallelMapper.VIRTUAL_THREADS;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.BinaryOperator;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * How {@link OpenApiCombiner} runs the work it does for each API. The APIs are independent of
+ * each other until they are merged, so that work can run on a virtual thread per API. The merge
+ * keeps the order of the APIs, but is associative, so it can be run as a balanced reduction. Both
+ * modes give the same combined document.
+ */
+public enum CombineMode {
+  SEQUENTIAL,
+  PARALLEL;
+
+  /** Applies the step to every item, and returns once it is done with all of them. */
+  public <T> void forEach(List<T> items, Consumer<T> step) {
+    map(
+        items,
+        item -> {
+          step.accept(item);
+          return item;
+        });
+  }
+
+  /** Applies the function to every item, keeping the order of the items in the results. */
+  public <T, R> List<R> map(List<T> items, Function<T, R> function) {
+    if (this == SEQUENTIAL) {
+      return items.stream().map(function).toList();
+    }
+    var futures =
+        items.stream()
+            .map(item -> CompletableFuture.supplyAsync(() -> function.apply(item), VIRTUAL_THREADS))
+            .toList();
+    // let every item finish before failing, so no step is left running on its own
+    CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new))
+        .exceptionally(exception -> null)
+        .join();
+    return futures.stream().map(CombineMode::join).toList();
+  }
+
+  /**
+   * Combines the items with an associative operator, keeping their order. In parallel the items
+   * are combined as a balanced tree, where both halves of every subtree are reduced concurrently.
+   */
+  public <T> T reduce(List<T> items, BinaryOperator<T> operator) {
+    if (items.isEmpty()) {
+      throw new IllegalArgumentException("Cannot reduce an empty list");
+    }
+    if (this == SEQUENTIAL) {
+      return items.stream().reduce(operator).orElseThrow();
+    }
+    return join(reduceAsync(items, operator));
+  }
+
+  private static <T> CompletableFuture<T> reduceAsync(List<T> items, BinaryOperator<T> operator) {
+    if (items.size() == 1) {
+      return CompletableFuture.completedFuture(items.get(0));
+    }
+    var middle = items.size() / 2;
+    var left = reduceAsync(items.subList(0, middle), operator);
+    var right = reduceAsync(items.subList(middle, items.size()), operator);
+    return left.thenCombineAsync(right, operator, VIRTUAL_THREADS);
+  }
+
+  private static <R> R join(CompletableFuture<R> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+}
@@ -0,0 +1,50 @@
+package no.sikt.generator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encodings in which generated specs are published. Every encoding is stored under its own key, so
+ * CloudFront serves the pre-compressed bytes as they are instead of compressing on the fly. The
+ * gzip header carries no timestamp, which keeps the encoded bytes stable for unchanged content.
+ */
+public enum ContentEncoding {
+  IDENTITY(null, ""),
+  GZIP("gzip", ".gz");
+
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private final String headerValue;
+  private final String suffix;
+
+  ContentEncoding(String headerValue, String suffix) {
+    this.headerValue = headerValue;
+    this.suffix = suffix;
+  }
+
+  /** The {@code Content-Encoding} header value, or {@code null} for unencoded content. */
+  public String getHeaderValue() {
+    return headerValue;
+  }
+
+  public String toKey(String key) {
+    return key + suffix;
+  }
+
+  /** Wraps {@code output} so that what is written to it is encoded. Closing it closes both. */
+  public OutputStream encode(OutputStream output) throws IOException {
+    return this == GZIP ? new GZIPOutputStream(output, BUFFER_SIZE) : output;
+  }
+
+  public byte[] encode(byte[] content) throws IOException {
+    if (this == IDENTITY) {
+      return content;
+    }
+    var output = new ByteArrayOutputStream(content.length / 4 + 64);
+    try (var encoded = encode(output)) {
+      encoded.write(content);
+    }
+    return output.toByteArray();
+  }
+}
@@ -0,0 +1,74 @@
+package no.sikt.generator;
+
+import static java.util.Objects.isNull;
+import static nva.commons.core.attempt.Try.attempt;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.TreeSet;
+import java.util.stream.Stream;
+import software.amazon.awssdk.services.apigateway.model.DocumentationPart;
+import software.amazon.awssdk.services.apigateway.model.DocumentationPartLocation;
+
+/**
+ * Stable content fingerprint of the documentation parts of an API. Every part is digested on its
+ * own as it streams past, and the final SHA-256 is taken over the part digests in sorted order, so
+ * the result does not depend on paging, service ordering or part ids, and only the 32-byte part
+ * digests are kept in memory.
+ */
+public final class DocumentationFingerprint {
+
+  public static final int FINGERPRINT_HEX_LENGTH = 32;
+  private static final String SHA_256 = "SHA-256";
+  private static final byte NULL_FIELD = 0;
+  private static final byte PRESENT_FIELD = 1;
+
+  private DocumentationFingerprint() {}
+
+  public static String of(Stream<DocumentationPart> parts) {
+    var partDigests = new TreeSet<byte[]>(Arrays::compare);
+    parts.map(DocumentationFingerprint::digestPart).forEach(partDigests::add);
+
+    var digest = newDigest();
+    partDigests.forEach(digest::update);
+    return HexFormat.of().formatHex(digest.digest()).substring(0, FINGERPRINT_HEX_LENGTH);
+  }
+
+  private static byte[] digestPart(DocumentationPart part) {
+    var digest = newDigest();
+    var location = part.location();
+    if (isNull(location)) {
+      update(digest, null);
+    } else {
+      updateLocation(digest, location);
+    }
+    update(digest, part.properties());
+    return digest.digest();
+  }
+
+  private static void updateLocation(MessageDigest digest, DocumentationPartLocation location) {
+    update(digest, location.typeAsString());
+    update(digest, location.path());
+    update(digest, location.method());
+    update(digest, location.statusCode());
+    update(digest, location.name());
+  }
+
+  private static void update(MessageDigest digest, String field) {
+    if (isNull(field)) {
+      digest.update(NULL_FIELD);
+      return;
+    }
+    var bytes = field.getBytes(StandardCharsets.UTF_8);
+    digest.update(PRESENT_FIELD);
+    digest.update(ByteBuffer.allocate(Integer.BYTES).putInt(bytes.length).array());
+    digest.update(bytes);
+  }
+
+  private static MessageDigest newDigest() {
+    return attempt(() -> MessageDigest.getInstance(SHA_256)).orElseThrow();
+  }
+}
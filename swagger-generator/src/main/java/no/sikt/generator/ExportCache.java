@@ -0,0 +1,132 @@
+package no.sikt.generator;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static nva.commons.core.attempt.Try.attempt;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.core.sync.ResponseTransformer;
+import software.amazon.awssdk.services.apigateway.model.Stage;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+/**
+ * Cache of raw API Gateway exports keyed by RestApi id, stage deployment id, documentation version
+ * and export format. An export only changes when one of these does, so a hit lets us skip the
+ * GetExport call entirely. Entries are persisted under {@link #CACHE_PREFIX} in S3 so that cold
+ * starts and the other handlers can reuse them. The bucket must not be served by CloudFront: it
+ * holds every export, including those of excluded APIs.
+ *
+ * <p>For warm invocations only the latest export of each API and format is also held in memory, so
+ * a long-lived container does not keep the exports of every deployment it has seen.
+ */
+public class ExportCache {
+
+  public static final String CACHE_PREFIX = "export-cache/";
+  private static final Logger LOGGER = LoggerFactory.getLogger(ExportCache.class);
+  private static final String NO_DOCUMENTATION_VERSION = "none";
+  private final Map<String, CachedExport> entries = new ConcurrentHashMap<>();
+  private final S3Client s3Client;
+  private final String bucket;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+
+  public ExportCache(S3Client s3Client, String bucket) {
+    this.s3Client = s3Client;
+    this.bucket = bucket;
+  }
+
+  public static ExportCache inMemory() {
+    return new ExportCache(null, null);
+  }
+
+  public String getOrFetch(
+      String restApiId, Stage stage, ExportFormat format, Supplier<String> fetcher) {
+    if (isNull(stage.deploymentId())) {
+      misses.incrementAndGet();
+      return fetcher.get();
+    }
+    var slot = restApiId + "." + format.getExtension();
+    var key = cacheKey(restApiId, stage, format);
+    var cached =
+        Optional.ofNullable(entries.get(slot))
+            .filter(entry -> entry.key().equals(key))
+            .map(CachedExport::export)
+            .or(() -> readFromS3(key));
+    if (cached.isPresent()) {
+      hits.incrementAndGet();
+      entries.put(slot, new CachedExport(key, cached.get()));
+      return cached.get();
+    }
+    misses.incrementAndGet();
+    var export = fetcher.get();
+    entries.put(slot, new CachedExport(key, export));
+    writeToS3(key, export);
+    return export;
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  public void resetStatistics() {
+    hits.set(0);
+    misses.set(0);
+  }
+
+  public void logStatistics() {
+    LOGGER.info("Export cache hits: {}, misses: {}", getHits(), getMisses());
+  }
+
+  private static String cacheKey(String restApiId, Stage stage, ExportFormat format) {
+    var documentationVersion =
+        Optional.ofNullable(stage.documentationVersion()).orElse(NO_DOCUMENTATION_VERSION);
+    return String.format(
+        "%s%s/%s-%s.%s",
+        CACHE_PREFIX,
+        restApiId,
+        stage.deploymentId(),
+        documentationVersion,
+        format.getExtension());
+  }
+
+  private boolean isPersistent() {
+    return nonNull(s3Client);
+  }
+
+  private Optional<String> readFromS3(String key) {
+    if (!isPersistent()) {
+      return Optional.empty();
+    }
+    var request = GetObjectRequest.builder().bucket(bucket).key(key).build();
+    return attempt(() -> s3Client.getObject(request, ResponseTransformer.toBytes()).asUtf8String())
+        .toOptional();
+  }
+
+  private void writeToS3(String key, String export) {
+    if (!isPersistent()) {
+      return;
+    }
+    var request = PutObjectRequest.builder().bucket(bucket).key(key).build();
+    attempt(() -> s3Client.putObject(request, RequestBody.fromString(export)))
+        .orElse(
+            failure -> {
+              LOGGER.warn("Could not persist export {}", key, failure.getException());
+              return null;
+            });
+  }
+
+  private record CachedExport(String key, String export) {}
+}
@@ -0,0 +1,75 @@
+package no.sikt.generator;
+
+import static no.sikt.generator.ApplicationConstants.APPLICATION_YAML;
+import static nva.commons.core.attempt.Try.attempt;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import io.swagger.v3.core.util.Json;
+import io.swagger.v3.core.util.Yaml;
+import io.swagger.v3.oas.models.OpenAPI;
+import io.swagger.v3.parser.util.DeserializationUtils;
+import io.swagger.v3.parser.util.OpenAPIDeserializer;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Format in which API Gateway exports are requested and generated specs are written. JSON exports
+ * are read straight into a Jackson tree, which is considerably cheaper than going through the YAML
+ * parser, and are only converted to YAML where a human readable file is written.
+ */
+public enum ExportFormat {
+  JSON("application/json", "json"),
+  YAML(APPLICATION_YAML, "yaml");
+
+  private final String contentType;
+  private final String extension;
+
+  ExportFormat(String contentType, String extension) {
+    this.contentType = contentType;
+    this.extension = extension;
+  }
+
+  public String getContentType() {
+    return contentType;
+  }
+
+  public String getExtension() {
+    return extension;
+  }
+
+  /** Content type of a file, judged by its extension. */
+  public static Optional<String> contentTypeOf(String filename) {
+    return Arrays.stream(values())
+        .filter(format -> filename.endsWith("." + format.extension))
+        .map(ExportFormat::getContentType)
+        .findFirst();
+  }
+
+  /**
+   * Writer for generated documents in this format. YAML is pretty printed for humans, while JSON
+   * is written compactly, since it is meant to be read by Swagger UI.
+   */
+  public ObjectWriter writer() {
+    return this == YAML ? Yaml.pretty() : Json.mapper().writer();
+  }
+
+  public OpenAPI parse(String export) {
+    return new OpenAPIDeserializer().deserialize(readTree(export)).getOpenAPI();
+  }
+
+  public String toYaml(String export) {
+    if (this == YAML) {
+      return export;
+    }
+    return attempt(() -> Yaml.mapper().writeValueAsString(Json.mapper().readTree(export)))
+        .orElseThrow();
+  }
+
+  private JsonNode readTree(String export) {
+    if (this == YAML) {
+      return DeserializationUtils.deserializeIntoTree(export, null);
+    }
+    return attempt(() -> Json.mapper().readTree(export)).orElseThrow();
+  }
+}
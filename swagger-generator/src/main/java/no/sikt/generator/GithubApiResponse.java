@@ -9,14 +9,25 @@ public class GithubApiResponse {
   @JsonProperty("zipball_url")
   public String zipUrl;
 
+  @JsonProperty("tag_name")
+  public String tagName;
+
   public GithubApiResponse() {}
 
-  public GithubApiResponse(String zipUrl) {
+  public GithubApiResponse(String zipUrl, String tagName) {
     this.zipUrl = zipUrl;
+    this.tagName = tagName;
   }
 
   @Override
   public String toString() {
-    return "{" + "\"zipball_url\": \"" + zipUrl + "\"" + "}";
+    return "{"
+        + "\"zipball_url\": \""
+        + zipUrl
+        + "\", "
+        + "\"tag_name\": \""
+        + tagName
+        + "\""
+        + "}";
   }
 }
@@ -0,0 +1,34 @@
+package no.sikt.generator;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.List;
+import nva.commons.core.JacocoGenerated;
+
+/**
+ * Peak heap use, read from the JVM's heap memory pools. The pools reach their peaks at different
+ * times, so their sum is an upper bound of the peak of the heap as a whole, which is what the
+ * memory setting of the Lambda has to fit.
+ */
+public final class HeapUsage {
+
+  @JacocoGenerated
+  private HeapUsage() {}
+
+  /** Starts a new measurement, forgetting the peaks reached so far. */
+  public static void resetPeak() {
+    heapPools().forEach(MemoryPoolMXBean::resetPeakUsage);
+  }
+
+  /** The bytes used by the heap at its peak since the last {@link #resetPeak}. */
+  public static long peakBytes() {
+    return heapPools().stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+  }
+
+  private static List<MemoryPoolMXBean> heapPools() {
+    return ManagementFactory.getMemoryPoolMXBeans().stream()
+        .filter(pool -> pool.getType() == MemoryType.HEAP && pool.isValid())
+        .toList();
+  }
+}
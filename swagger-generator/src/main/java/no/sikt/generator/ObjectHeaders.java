@@ -0,0 +1,31 @@
+package no.sikt.generator;
+
+import java.util.Map;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+/** Headers and user metadata applied to an object when it is uploaded to S3. */
+public record ObjectHeaders(
+    String contentType, String contentEncoding, String cacheControl, Map<String, String> metadata) {
+
+  public static ObjectHeaders ofMetadata(Map<String, String> metadata) {
+    return new ObjectHeaders(null, null, null, metadata);
+  }
+
+  public PutObjectRequest.Builder applyTo(PutObjectRequest.Builder builder) {
+    return builder
+        .contentType(contentType)
+        .contentEncoding(contentEncoding)
+        .cacheControl(cacheControl)
+        .metadata(metadata);
+  }
+
+  public CreateMultipartUploadRequest.Builder applyTo(
+      CreateMultipartUploadRequest.Builder builder) {
+    return builder
+        .contentType(contentType)
+        .contentEncoding(contentEncoding)
+        .cacheControl(cacheControl)
+        .metadata(metadata);
+  }
+}
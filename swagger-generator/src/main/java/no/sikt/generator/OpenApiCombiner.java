@@ -2,49 +2,53 @@ package no.sikt.generator;
 
 import static java.util.Objects.isNull;
 import static java.util.Objects.nonNull;
+import static no.sikt.generator.ApplicationConstants.COMBINE_MODE;
 import static no.sikt.generator.ApplicationConstants.DOMAIN;
 import static no.sikt.generator.OpenApiUtils.addTag;
 import static no.sikt.generator.OpenApiUtils.getResourcePath;
-import static no.sikt.generator.OpenApiUtils.hasPath;
 
 import io.swagger.v3.oas.models.Components;
 import io.swagger.v3.oas.models.OpenAPI;
 import io.swagger.v3.oas.models.Operation;
 import io.swagger.v3.oas.models.PathItem;
+import io.swagger.v3.oas.models.Paths;
 import io.swagger.v3.oas.models.media.Schema;
-import io.swagger.v3.oas.models.parameters.Parameter;
-import io.swagger.v3.oas.models.security.SecurityScheme;
 import io.swagger.v3.oas.models.servers.Server;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
-import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.text.CaseUtils;
+import java.util.stream.IntStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class OpenApiCombiner {
 
   public static final String COMPONENTS_SCHEMAS = "#/components/schemas/";
-  public static final int MAX_RENAME_ITERATIONS = 20;
-  public static final String MAX_RENAME_ITERATIONS_REACHED =
-      "Max iterations of renaming schemas " + "reached. Infinite loop?";
+  public static final String RENAMED_SCHEMAS_COLLIDE =
+      "Schemas %s still collide after renaming duplicates";
   public static final String DUPLICATES_FOUND =
       "Found duplicate schema-names that needs to be renamed: {}";
   private final OpenAPI baseTemplate;
   private final List<OpenAPI> others;
+  private final CombineMode mode;
+  private final SchemaFingerprints fingerprints = new SchemaFingerprints();
 
   private static final Logger LOGGER = LoggerFactory.getLogger(OpenApiCombiner.class);
 
   public OpenApiCombiner(OpenAPI baseTemplate, List<OpenAPI> others) {
+    this(baseTemplate, others, COMBINE_MODE);
+  }
+
+  public OpenApiCombiner(OpenAPI baseTemplate, List<OpenAPI> others, CombineMode mode) {
     this.baseTemplate = baseTemplate;
     this.others = others;
+    this.mode = mode;
   }
 
   private Server findMainServer() {
@@ -75,35 +79,37 @@ public class OpenApiCombiner {
       this.baseTemplate.setComponents(new Components());
     }
 
-    removeOptions();
+    mode.forEach(this.others, this::normalize);
     renameDuplicateSchemas();
 
-    this.others.stream()
-        .forEach(
-            api -> {
-              this.baseTemplate.addTagsItem(OpenApiUtils.convertInfoToTag(api.getInfo()));
-              removeTags(api);
-              mergeComponents(api);
-              mergePaths(api);
-              mergeSecurity(api);
-            });
-    sortSchemas();
+    var merger = new OpenApiMerger(fingerprints);
+    var parts = mode.map(this.others, this::toPartialDocument);
+    var apis = parts.isEmpty() ? new OpenAPI().openapi(null) : mode.reduce(parts, merger::merge);
+    // merging into the template, rather than reducing it with the parts, gives a document of its
+    // own even without any APIs, so sorting its schemas leaves the template alone
+    var combined = merger.merge(this.baseTemplate, apis);
+    sortSchemas(combined);
 
-    return baseTemplate;
+    return combined;
   }
 
-  private void sortSchemas() {
-    if (isNull(this.baseTemplate.getComponents().getSchemas())) {
+  private void sortSchemas(OpenAPI combined) {
+    if (isNull(combined.getComponents().getSchemas())) {
       return;
     }
-    var unsorted = this.baseTemplate.getComponents().getSchemas().entrySet();
-    var sorted = unsorted.stream().sorted(Entry.comparingByKey()).collect(Collectors.toList());
-
-    this.baseTemplate.getComponents().setSchemas(null);
-    sorted.forEach(
-        e -> {
-          this.baseTemplate.getComponents().addSchemas(e.getKey(), e.getValue());
-        });
+    var sorted = new LinkedHashMap<String, Schema>();
+    combined.getComponents().getSchemas().entrySet().stream()
+        .sorted(Entry.comparingByKey())
+        .forEach(entry -> sorted.put(entry.getKey(), entry.getValue()));
+    combined.getComponents().setSchemas(sorted);
+  }
+
+  /** The steps that only touch the given API, which may run for all APIs at once. */
+  private void normalize(OpenAPI api) {
+    removeOptions(api);
+    removeTags(api);
+    var title = api.getInfo().getTitle();
+    api.getPaths().values().forEach(path -> path.readOperations().forEach(op -> addTag(op, title)));
   }
 
   private void removeTag(Operation op) {
@@ -117,55 +123,33 @@ public class OpenApiCombiner {
         .forEach(this::removeTag);
   }
 
-  private void mergeSecurity(OpenAPI api) {
-    if (nonNull(api.getSecurity())) {
-      for (var securityRequirement : api.getSecurity()) {
-        LOGGER.info("adding security req {}", securityRequirement);
-        this.baseTemplate.addSecurityItem(securityRequirement);
-      }
-    }
-  }
+  /** The part of the combined document the given API contributes, to be merged in API order. */
+  private OpenAPI toPartialDocument(OpenAPI api) {
+    var document = new OpenAPI().openapi(null);
+    document.addTagsItem(OpenApiUtils.convertInfoToTag(api.getInfo()));
 
-  private void mergePaths(OpenAPI api) {
-    var title = api.getInfo().getTitle();
     var resourcePath = getResourcePath(api);
-
-    for (var entry : api.getPaths().entrySet()) {
-
-      entry.getValue().readOperations().forEach(op -> addTag(op, title));
-
-      var newPathKey = "/" + resourcePath + entry.getKey();
-      if (hasPath(baseTemplate, newPathKey)) {
-        throw new IllegalStateException("Path " + newPathKey + " already exists");
-      }
-
-      this.baseTemplate.path(newPathKey, entry.getValue());
-    }
-  }
-
-  private void mergeComponents(OpenAPI api) {
-    if (isNull(api.getComponents())) {
-      return;
+    if (!api.getPaths().isEmpty()) {
+      var paths = new Paths();
+      api.getPaths()
+          .forEach((path, pathItem) -> paths.addPathItem("/" + resourcePath + path, pathItem));
+      document.setPaths(paths);
     }
 
-    if (nonNull(api.getComponents().getParameters())) {
-      for (Entry<String, Parameter> parameter : api.getComponents().getParameters().entrySet()) {
-        this.baseTemplate.getComponents().addParameters(parameter.getKey(), parameter.getValue());
-      }
+    if (nonNull(api.getComponents())) {
+      document.setComponents(
+          new Components()
+              .schemas(api.getComponents().getSchemas())
+              .parameters(api.getComponents().getParameters())
+              .securitySchemes(api.getComponents().getSecuritySchemes()));
     }
 
-    if (nonNull(api.getComponents().getSchemas())) {
-      for (Entry<String, Schema> schema : api.getComponents().getSchemas().entrySet()) {
-        mergeScheme(baseTemplate, schema);
-      }
-    }
-
-    if (nonNull(api.getComponents().getSecuritySchemes())) {
-      var entrySet = api.getComponents().getSecuritySchemes().entrySet();
-      for (Entry<String, SecurityScheme> securitySchemeEntry : entrySet) {
-        mergeSecuritySchemes(baseTemplate, securitySchemeEntry);
-      }
+    if (nonNull(api.getSecurity())) {
+      api.getSecurity()
+          .forEach(requirement -> LOGGER.info("adding security req {}", requirement));
+      document.setSecurity(api.getSecurity());
     }
+    return document;
   }
 
   private Set<String> findDuplicateSchemaNames() {
@@ -179,7 +163,8 @@ public class OpenApiCombiner {
                 for (Entry<String, Schema> schema : api.getComponents().getSchemas().entrySet()) {
                   if (isNull(schemas.get(schema.getKey()))) {
                     schemas.put(schema.getKey(), schema.getValue());
-                  } else if (!schemas.get(schema.getKey()).equals(schema.getValue())) {
+                  } else if (!fingerprints.areEqual(
+                      schemas.get(schema.getKey()), schema.getValue())) {
                     collidingSchemaNames.add(schema.getKey());
                   }
                 }
@@ -189,176 +174,47 @@ public class OpenApiCombiner {
     return collidingSchemaNames;
   }
 
-  private void removeOptions() {
-    this.others.stream()
-        .forEach(
-            api -> {
-              api.getPaths()
-                  .entrySet()
-                  .forEach(
-                      path -> {
-                        if (nonNull(path.getValue().getOptions())) {
-                          LOGGER.info(
-                              "Removing options for {} {}",
-                              api.getInfo().getTitle(),
-                              path.getKey());
-                          path.getValue().setOptions(null);
-                        }
-                      });
-            });
-  }
-
-  @SuppressWarnings("PMD.AssignmentInOperand")
-  private void renameDuplicateSchemas() {
-    Set<String> duplicateSchemas;
-    var iterations = 0;
-    do {
-      if (iterations++ > MAX_RENAME_ITERATIONS) {
-        throw new RuntimeException(MAX_RENAME_ITERATIONS_REACHED);
-      }
-      duplicateSchemas = findDuplicateSchemaNames();
-      if (!duplicateSchemas.isEmpty()) {
-        LOGGER.info(DUPLICATES_FOUND, duplicateSchemas);
-      }
-      renameSchemas(duplicateSchemas);
-      renameNestedSchemaRefs(duplicateSchemas);
-    } while (!duplicateSchemas.isEmpty());
-  }
-
-  private void renameNestedSchemaRefs(Set<String> duplicateNames) {
-    this.others.stream()
+  private void removeOptions(OpenAPI api) {
+    api.getPaths()
+        .entrySet()
         .forEach(
-            api -> {
-              if (nonNull(api.getComponents().getSchemas())) {
-                for (var schemaEntry : api.getComponents().getSchemas().entrySet()) {
-                  var nestedSchemas = OpenApiUtils.getNestedSchemas(api, schemaEntry.getValue());
-                  nestedSchemas.stream()
-                      .filter(Objects::nonNull)
-                      .forEach(
-                          s -> {
-                            var refName = StringUtils.stripStart(s.get$ref(), COMPONENTS_SCHEMAS);
-                            var newName =
-                                CaseUtils.toCamelCase(api.getInfo().getTitle(), true) + refName;
-                            if (duplicateNames.contains(refName)) {
-                              s.set$ref(COMPONENTS_SCHEMAS + newName);
-                            }
-                          });
-                }
+            path -> {
+              if (nonNull(path.getValue().getOptions())) {
+                LOGGER.info("Removing options for {} {}", api.getInfo().getTitle(), path.getKey());
+                path.getValue().setOptions(null);
               }
             });
   }
 
-  private void renameSchemas(Set<String> duplicateNames) {
-    this.others.stream()
-        .forEach(
-            api -> {
-              if (nonNull(api.getComponents().getSchemas())) {
-                Map<String, Schema> newSchemas = new HashMap<>();
-
-                for (var schemaEntry : api.getComponents().getSchemas().entrySet()) {
-
-                  var oldName = schemaEntry.getKey();
-                  var newName = CaseUtils.toCamelCase(api.getInfo().getTitle(), true) + oldName;
-
-                  if (duplicateNames.contains(oldName)) {
-                    LOGGER.info(
-                        "API {}: Replacing {} with {}",
-                        api.getInfo().getTitle(),
-                        "/" + oldName,
-                        "/" + newName);
-                    renameSchemaRef(api, oldName, newName);
-                    newSchemas.put(newName, schemaEntry.getValue());
-                  } else {
-                    newSchemas.put(oldName, schemaEntry.getValue());
-                  }
-                  api.getComponents().setSchemas(newSchemas);
-                }
-              }
-            });
-  }
-
-  private void renameSchemaRef(OpenAPI target, String oldName, String newName) {
-    target
-        .getPaths()
-        .values()
-        .forEach(
-            pathItem -> {
-              pathItem
-                  .readOperations()
-                  .forEach(
-                      pathOperation -> {
-                        pathOperation
-                            .getResponses()
-                            .entrySet()
-                            .forEach(
-                                response -> {
-                                  response
-                                      .getValue()
-                                      .getContent()
-                                      .entrySet()
-                                      .forEach(
-                                          content -> {
-                                            var oldRef = content.getValue().getSchema().get$ref();
-                                            if (oldRef.equals(COMPONENTS_SCHEMAS + oldName)) {
-                                              content
-                                                  .getValue()
-                                                  .getSchema()
-                                                  .set$ref(COMPONENTS_SCHEMAS + newName);
-                                            }
-                                          });
-                                });
-                        var requestBody = pathOperation.getRequestBody();
-                        if (nonNull(requestBody)) {
-                          requestBody
-                              .getContent()
-                              .entrySet()
-                              .forEach(
-                                  content -> {
-                                    var oldRef = content.getValue().getSchema().get$ref();
-                                    if (oldRef.equals(COMPONENTS_SCHEMAS + oldName)) {
-                                      content
-                                          .getValue()
-                                          .getSchema()
-                                          .set$ref(COMPONENTS_SCHEMAS + newName);
-                                    }
-                                  });
-                        }
-                      });
-            });
-  }
-
-  private void mergeScheme(OpenAPI target, Entry<String, Schema> source) {
-    var newKey = source.getKey();
-    if (nonNull(this.baseTemplate.getComponents().getSchemas())
-        && nonNull(this.baseTemplate.getComponents().getSchemas().get(newKey))) {
-
-      var targetValue = this.baseTemplate.getComponents().getSchemas().get(newKey);
-      var sourceValue = source.getValue();
-      if (targetValue.equals(sourceValue)) {
-        LOGGER.info("Ignoring equal schema for {}", newKey);
-      } else {
-        throw new IllegalStateException(
-            "Schema " + newKey + " already exists and they are not equal");
-      }
-    } else {
-      target.getComponents().addSchemas(newKey, source.getValue());
+  private void renameDuplicateSchemas() {
+    var indexes = mode.map(this.others, SchemaReferenceIndex::of);
+    var plan = new SchemaRenamePlanner(this.others, indexes, fingerprints).plan();
+    var apis = IntStream.range(0, this.others.size()).boxed().toList();
+    mode.forEach(apis, i -> renameSchemas(this.others.get(i), indexes.get(i), plan.get(i)));
+    var collisions = findDuplicateSchemaNames();
+    if (!collisions.isEmpty()) {
+      throw new IllegalStateException(String.format(RENAMED_SCHEMAS_COLLIDE, collisions));
     }
   }
 
-  private void mergeSecuritySchemes(OpenAPI target, Entry<String, SecurityScheme> source) {
-    var newKey = source.getKey();
-    if (nonNull(this.baseTemplate.getComponents().getSecuritySchemes())
-        && nonNull(this.baseTemplate.getComponents().getSecuritySchemes().get(newKey))) {
-
-      var targetValue = this.baseTemplate.getComponents().getSecuritySchemes().get(newKey);
-      var sourceValue = source.getValue();
-      if (targetValue.equals(sourceValue)) {
-        LOGGER.info("Ignoring equal securityScheme");
-        return;
-      } else {
-        LOGGER.warn("Security schema " + newKey + " already exists and they are not equal");
-      }
+  private void renameSchemas(OpenAPI api, SchemaReferenceIndex index, Map<String, String> renames) {
+    if (renames.isEmpty()) {
+      return;
     }
-    target.getComponents().addSecuritySchemes(newKey, source.getValue());
+    LOGGER.info(DUPLICATES_FOUND, renames.keySet());
+    var title = api.getInfo().getTitle();
+    renames.forEach(
+        (oldName, newName) ->
+            LOGGER.info("API {}: Replacing {} with {}", title, "/" + oldName, "/" + newName));
+
+    Map<String, Schema> newSchemas = new LinkedHashMap<>();
+    api.getComponents()
+        .getSchemas()
+        .forEach((name, schema) -> newSchemas.put(renames.getOrDefault(name, name), schema));
+    api.getComponents().setSchemas(newSchemas);
+
+    index.rename(renames);
+    // refs may have been renamed within any schema of the api, so forget all of them
+    fingerprints.forget(newSchemas.values());
   }
 }
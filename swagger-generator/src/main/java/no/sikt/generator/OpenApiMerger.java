@@ -0,0 +1,173 @@
+package no.sikt.generator;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import io.swagger.v3.oas.models.Components;
+import io.swagger.v3.oas.models.OpenAPI;
+import io.swagger.v3.oas.models.Paths;
+import io.swagger.v3.oas.models.media.Schema;
+import io.swagger.v3.oas.models.security.SecurityScheme;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Merges two partially combined documents into a new one, leaving both untouched. Paths, tags,
+ * security requirements, and schemas, parameters and security schemes of the components are
+ * merged with the rules the combiner has always had: a path may only be defined once, a schema
+ * name may only be reused for an equal schema, and the last parameter or security scheme of a
+ * name wins. Everything else is taken from the first document that has it.
+ *
+ * <p>The merged document has its own paths, components and lists and maps within them, even when
+ * one operand adds nothing, so adding to or removing from them leaves the operands untouched. The
+ * path items, schemas and other values in them are shared with the operands, and must not be
+ * changed after the merge.
+ *
+ * <p>The merge is associative and keeps the order of its operands, so any grouping of a sequence
+ * of documents gives the same result. That lets {@link CombineMode} merge many APIs as a balanced
+ * reduction, and lets merged subsequences be reused.
+ */
+public class OpenApiMerger {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(OpenApiMerger.class);
+  private final SchemaFingerprints fingerprints;
+
+  public OpenApiMerger(SchemaFingerprints fingerprints) {
+    this.fingerprints = fingerprints;
+  }
+
+  public OpenAPI merge(OpenAPI left, OpenAPI right) {
+    var merged =
+        new OpenAPI(left.getSpecVersion())
+            .openapi(firstNonNull(left.getOpenapi(), right.getOpenapi()))
+            .info(firstNonNull(left.getInfo(), right.getInfo()))
+            .externalDocs(firstNonNull(left.getExternalDocs(), right.getExternalDocs()))
+            .servers(copy(firstNonNull(left.getServers(), right.getServers())))
+            .webhooks(copy(firstNonNull(left.getWebhooks(), right.getWebhooks())))
+            .jsonSchemaDialect(
+                firstNonNull(left.getJsonSchemaDialect(), right.getJsonSchemaDialect()));
+    merged.setExtensions(copy(firstNonNull(left.getExtensions(), right.getExtensions())));
+    merged.setTags(concat(left.getTags(), right.getTags()));
+    merged.setSecurity(concat(left.getSecurity(), right.getSecurity()));
+    merged.setPaths(mergePaths(left.getPaths(), right.getPaths()));
+    merged.setComponents(mergeComponents(left.getComponents(), right.getComponents()));
+    return merged;
+  }
+
+  private static Paths mergePaths(Paths left, Paths right) {
+    if (isNull(right) || right.isEmpty()) {
+      return copyPaths(left);
+    }
+    var merged = new Paths();
+    if (nonNull(left)) {
+      merged.putAll(left);
+    }
+    right.forEach(
+        (path, pathItem) -> {
+          if (merged.containsKey(path)) {
+            throw new IllegalStateException("Path " + path + " already exists");
+          }
+          merged.addPathItem(path, pathItem);
+        });
+    merged.setExtensions(
+        copy(firstNonNull(isNull(left) ? null : left.getExtensions(), right.getExtensions())));
+    return merged;
+  }
+
+  private Components mergeComponents(Components left, Components right) {
+    if (isNull(left) || isNull(right)) {
+      return copyComponents(firstNonNull(left, right));
+    }
+    var merged = new Components();
+    merged.setSchemas(mergeMaps(left.getSchemas(), right.getSchemas(), this::mergeSchema));
+    merged.setParameters(
+        mergeMaps(left.getParameters(), right.getParameters(), (name, first, last) -> last));
+    merged.setSecuritySchemes(
+        mergeMaps(
+            left.getSecuritySchemes(), right.getSecuritySchemes(), this::mergeSecurityScheme));
+    merged.setResponses(copy(firstNonNull(left.getResponses(), right.getResponses())));
+    merged.setRequestBodies(copy(firstNonNull(left.getRequestBodies(), right.getRequestBodies())));
+    merged.setHeaders(copy(firstNonNull(left.getHeaders(), right.getHeaders())));
+    merged.setExamples(copy(firstNonNull(left.getExamples(), right.getExamples())));
+    merged.setLinks(copy(firstNonNull(left.getLinks(), right.getLinks())));
+    merged.setCallbacks(copy(firstNonNull(left.getCallbacks(), right.getCallbacks())));
+    merged.setPathItems(copy(firstNonNull(left.getPathItems(), right.getPathItems())));
+    merged.setExtensions(copy(firstNonNull(left.getExtensions(), right.getExtensions())));
+    return merged;
+  }
+
+  private Schema mergeSchema(String name, Schema first, Schema last) {
+    if (!fingerprints.areEqual(first, last)) {
+      throw new IllegalStateException("Schema " + name + " already exists and they are not equal");
+    }
+    LOGGER.info("Ignoring equal schema for {}", name);
+    return first;
+  }
+
+  private SecurityScheme mergeSecurityScheme(
+      String name, SecurityScheme first, SecurityScheme last) {
+    if (first.equals(last)) {
+      LOGGER.info("Ignoring equal securityScheme");
+      return first;
+    }
+    LOGGER.warn("Security schema " + name + " already exists and they are not equal");
+    return last;
+  }
+
+  /** Both maps in order, resolving the values of keys that are in both. */
+  private static <V> Map<String, V> mergeMaps(
+      Map<String, V> left, Map<String, V> right, Resolver<V> resolver) {
+    if (isNull(right) || right.isEmpty()) {
+      return copy(left);
+    }
+    Map<String, V> merged = isNull(left) ? new LinkedHashMap<>() : new LinkedHashMap<>(left);
+    right.forEach(
+        (key, value) ->
+            merged.merge(key, value, (first, last) -> resolver.resolve(key, first, last)));
+    return merged;
+  }
+
+  private static <T> List<T> concat(List<T> left, List<T> right) {
+    if (isNull(right) || right.isEmpty()) {
+      return copy(left);
+    }
+    var merged = isNull(left) ? new ArrayList<T>() : new ArrayList<>(left);
+    merged.addAll(right);
+    return merged;
+  }
+
+  private Components copyComponents(Components components) {
+    return isNull(components) ? null : mergeComponents(components, new Components());
+  }
+
+  private static Paths copyPaths(Paths paths) {
+    if (isNull(paths)) {
+      return null;
+    }
+    var copied = new Paths();
+    copied.putAll(paths);
+    copied.setExtensions(copy(paths.getExtensions()));
+    return copied;
+  }
+
+  private static <K, V> Map<K, V> copy(Map<K, V> map) {
+    return isNull(map) ? null : new LinkedHashMap<>(map);
+  }
+
+  private static <T> List<T> copy(List<T> list) {
+    return isNull(list) ? null : new ArrayList<>(list);
+  }
+
+  private static <T> T firstNonNull(T first, T second) {
+    return nonNull(first) ? first : second;
+  }
+
+  @FunctionalInterface
+  private interface Resolver<V> {
+    V resolve(String key, V first, V last);
+  }
+}
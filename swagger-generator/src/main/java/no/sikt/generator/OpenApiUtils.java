@@ -76,6 +76,26 @@ public final class OpenApiUtils {
     }
   }
 
+  /** The schemas directly inside the given one, without following {@code $ref}s. */
+  public static Stream<Schema> getChildSchemas(Schema schema) {
+    return Stream.of(
+            Stream.of(schema.getItems(), schema.getNot()),
+            getNestedAllOfSchemas(schema),
+            getNestedAnyOfSchemas(schema),
+            getNestedOneOfSchemas(schema),
+            getNestedPropertiesSchemas(schema),
+            getAdditionalPropertiesSchemas(schema))
+        .flatMap(stream -> stream)
+        .filter(Objects::nonNull);
+  }
+
+  /** The name of the component schema a {@code $ref} points to, if it points to one. */
+  public static Optional<String> getSchemaName(String ref) {
+    return nonNull(ref) && ref.startsWith(COMPONENTS_SCHEMAS)
+        ? Optional.of(ref.substring(COMPONENTS_SCHEMAS.length()))
+        : Optional.empty();
+  }
+
   public static Stream<ApiResponse> getApiResponsesFromOperation(Operation operation) {
     return operation.getResponses().values().stream().filter(Objects::nonNull);
   }
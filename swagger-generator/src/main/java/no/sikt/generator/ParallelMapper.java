@@ -0,0 +1,105 @@
+package no.sikt.generator;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Applies a blocking function to many items concurrently on virtual threads, with at most {@code
+ * maxConcurrency} invocations in flight. Results keep the order of the input. With {@link #map},
+ * an item that fails is logged and left out without affecting the others, while {@link #mapAll}
+ * fails as a whole when any item does.
+ */
+public class ParallelMapper {
+
+  /** Starts every task on its own virtual thread, for composing async stages. */
+  public static final Executor VIRTUAL_THREADS = runnable -> Thread.ofVirtual().start(runnable);
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ParallelMapper.class);
+  private final int maxConcurrency;
+
+  public ParallelMapper(int maxConcurrency) {
+    if (maxConcurrency < 1) {
+      throw new IllegalArgumentException("Concurrency must be at least 1, was " + maxConcurrency);
+    }
+    this.maxConcurrency = maxConcurrency;
+  }
+
+  public int getMaxConcurrency() {
+    return maxConcurrency;
+  }
+
+  public <T, R> List<R> map(List<T> items, Function<T, R> function) {
+    return map(items.stream(), function);
+  }
+
+  public <T, R> List<R> map(Stream<T> items, Function<T, R> function) {
+    var semaphore = new Semaphore(maxConcurrency);
+    try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      var futures = items.map(item -> submit(executor, semaphore, item, function)).toList();
+      return futures.stream().map(CompletableFuture::join).filter(Objects::nonNull).toList();
+    }
+  }
+
+  /**
+   * Like {@link #map}, but for items that must all succeed. Every item is run to completion, and
+   * the first failure in input order is then rethrown.
+   */
+  public <T, R> List<R> mapAll(List<T> items, Function<T, R> function) {
+    var semaphore = new Semaphore(maxConcurrency);
+    List<CompletableFuture<R>> futures;
+    try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+      futures = items.stream().map(item -> supply(executor, semaphore, item, function)).toList();
+    }
+    return futures.stream().map(ParallelMapper::join).toList();
+  }
+
+  private static <T, R> CompletableFuture<R> submit(
+      Executor executor, Semaphore semaphore, T item, Function<T, R> function) {
+    return supply(executor, semaphore, item, function)
+        .exceptionally(exception -> logFailure(item, exception));
+  }
+
+  private static <T, R> CompletableFuture<R> supply(
+      Executor executor, Semaphore semaphore, T item, Function<T, R> function) {
+    return CompletableFuture.supplyAsync(() -> applyBounded(semaphore, item, function), executor);
+  }
+
+  private static <T, R> R applyBounded(Semaphore semaphore, T item, Function<T, R> function) {
+    try {
+      semaphore.acquire();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting to process " + item, e);
+    }
+    try {
+      return function.apply(item);
+    } finally {
+      semaphore.release();
+    }
+  }
+
+  private static <R> R join(CompletableFuture<R> future) {
+    try {
+      return future.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException cause) {
+        throw cause;
+      }
+      throw e;
+    }
+  }
+
+  private static <T, R> R logFailure(T item, Throwable exception) {
+    LOGGER.error("Failed to process {}", item, exception);
+    return null;
+  }
+}
@@ -0,0 +1,147 @@
+package no.sikt.generator;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.swagger.v3.core.util.Json;
+import io.swagger.v3.oas.models.OpenAPI;
+import io.swagger.v3.parser.util.OpenAPIDeserializer;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Container-scoped cache of parsed OpenAPI documents keyed by their raw content. The cache holds
+ * the deserialized model and hands out deep copies of it, so callers are free to mutate what they
+ * get back. A copy is made by writing the model to a Jackson tree and reading that back with the
+ * parser's own {@link OpenAPIDeserializer}, which skips the text parsing. Jackson's model mapping
+ * would be cheaper, but it picks different {@link io.swagger.v3.oas.models.media.Schema}
+ * subclasses than the parser, and schemas of different classes are never equal. Every call gets a
+ * copy, including the one that parsed the document, so all callers see models of the same shape.
+ *
+ * <p>The key is the content itself. A string caches its hash code, and the exports and templates
+ * are kept as the same string instances between invocations, so a hit usually costs one identity
+ * comparison. Entries are evicted least recently used first once the documents they were parsed
+ * from add up to more than the maximum number of characters. The retained size of a parsed model
+ * cannot be measured cheaply, but it grows with the size of its document, so the length of the
+ * content is used as the estimate. The default fits about twice the exports and templates of one
+ * run, so the documents of stale deployments are evicted soon after they are replaced.
+ */
+public final class ParsedOpenApiCache {
+
+  public static final long DEFAULT_MAX_CHARACTERS = 4L * 1024 * 1024;
+  private static final Logger LOGGER = LoggerFactory.getLogger(ParsedOpenApiCache.class);
+  private static final ParsedOpenApiCache INSTANCE =
+      new ParsedOpenApiCache(DEFAULT_MAX_CHARACTERS);
+  private final LinkedHashMap<String, OpenAPI> entries = new LinkedHashMap<>(16, 0.75f, true);
+  private final ReentrantLock lock = new ReentrantLock();
+  private final long maxCharacters;
+  private long retainedCharacters;
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  public ParsedOpenApiCache(long maxCharacters) {
+    this.maxCharacters = maxCharacters;
+  }
+
+  public static ParsedOpenApiCache getInstance() {
+    return INSTANCE;
+  }
+
+  public OpenAPI parse(String content, ExportFormat format) {
+    var cached = lookup(content);
+    if (nonNull(cached)) {
+      hits.incrementAndGet();
+      return copy(cached);
+    }
+    misses.incrementAndGet();
+    var parsed = format.parse(content);
+    store(content, parsed);
+    return copy(parsed);
+  }
+
+  public long getHits() {
+    return hits.get();
+  }
+
+  public long getMisses() {
+    return misses.get();
+  }
+
+  public long getEvictions() {
+    return evictions.get();
+  }
+
+  public int size() {
+    lock.lock();
+    try {
+      return entries.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public long getRetainedCharacters() {
+    lock.lock();
+    try {
+      return retainedCharacters;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public void resetStatistics() {
+    hits.set(0);
+    misses.set(0);
+    evictions.set(0);
+  }
+
+  public void logStatistics() {
+    LOGGER.info(
+        "Parse cache hits: {}, misses: {}, evictions: {}, entries: {} of {} characters",
+        getHits(),
+        getMisses(),
+        getEvictions(),
+        size(),
+        getRetainedCharacters());
+  }
+
+  private OpenAPI lookup(String content) {
+    lock.lock();
+    try {
+      return entries.get(content);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void store(String content, OpenAPI openApi) {
+    lock.lock();
+    try {
+      if (isNull(entries.put(content, openApi))) {
+        retainedCharacters += content.length();
+      }
+      // the newest entry is kept even when it alone is larger than the maximum
+      var iterator = entries.keySet().iterator();
+      while (retainedCharacters > maxCharacters && entries.size() > 1) {
+        retainedCharacters -= iterator.next().length();
+        iterator.remove();
+        evictions.incrementAndGet();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static OpenAPI copy(OpenAPI openApi) {
+    if (isNull(openApi)) {
+      return null;
+    }
+    JsonNode tree = Json.mapper().valueToTree(openApi);
+    return new OpenAPIDeserializer().deserialize(tree).getOpenAPI();
+  }
+}
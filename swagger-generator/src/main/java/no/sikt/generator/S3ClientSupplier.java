@@ -0,0 +1,16 @@
+package no.sikt.generator;
+
+import java.util.function.Supplier;
+import no.unit.nva.s3.S3Driver;
+import nva.commons.core.JacocoGenerated;
+import software.amazon.awssdk.services.s3.S3Client;
+
+@JacocoGenerated
+public final class S3ClientSupplier {
+  private S3ClientSupplier() {}
+
+  public static Supplier<S3Client> getSupplier() {
+    return AwsClientRegistry.getInstance()
+        .shared(S3Client.class, () -> S3Driver.defaultS3Client().build());
+  }
+}
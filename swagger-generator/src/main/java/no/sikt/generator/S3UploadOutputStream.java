@@ -0,0 +1,192 @@
+package no.sikt.generator;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+
+/**
+ * Output stream that uploads what is written to it to S3 without holding the whole object in
+ * memory. Objects smaller than one part are sent with a single PutObject when the stream is
+ * closed; larger objects switch to a multipart upload and never buffer more than one part. Closing
+ * the stream commits the object, so a writer that fails part way must {@link #abort} instead.
+ */
+public class S3UploadOutputStream extends OutputStream {
+
+  public static final int DEFAULT_PART_SIZE = 8 * 1024 * 1024;
+  private static final int INITIAL_BUFFER_SIZE = 64 * 1024;
+  private final S3Client s3Client;
+  private final String bucket;
+  private final String key;
+  private final ObjectHeaders headers;
+  private final int partSize;
+  private final List<CompletedPart> completedParts = new ArrayList<>();
+  private byte[] buffer = new byte[0];
+  private int buffered;
+  private long bytesWritten;
+  private String uploadId;
+  private boolean closed;
+
+  public S3UploadOutputStream(S3Client s3Client, String bucket, String key, ObjectHeaders headers) {
+    this(s3Client, bucket, key, headers, DEFAULT_PART_SIZE);
+  }
+
+  public S3UploadOutputStream(
+      S3Client s3Client, String bucket, String key, ObjectHeaders headers, int partSize) {
+    this.s3Client = s3Client;
+    this.bucket = bucket;
+    this.key = key;
+    this.headers = headers;
+    this.partSize = partSize;
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    write(new byte[] {(byte) b}, 0, 1);
+  }
+
+  @Override
+  public void write(byte[] bytes, int offset, int length) throws IOException {
+    ensureOpen();
+    var position = offset;
+    var remaining = length;
+    while (remaining > 0) {
+      var chunk = Math.min(remaining, partSize - buffered);
+      ensureCapacity(buffered + chunk);
+      System.arraycopy(bytes, position, buffer, buffered, chunk);
+      buffered += chunk;
+      bytesWritten += chunk;
+      position += chunk;
+      remaining -= chunk;
+      if (buffered == partSize) {
+        uploadPart();
+      }
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    if (isNull(uploadId)) {
+      putObject();
+    } else {
+      if (buffered > 0) {
+        uploadPart();
+      }
+      completeMultipartUpload();
+    }
+  }
+
+  /**
+   * Discards what was written without creating the object, and aborts the multipart upload if one
+   * was started. Does nothing once the stream is closed.
+   */
+  public void abort() {
+    if (!closed) {
+      abortUpload();
+    }
+  }
+
+  public long getBytesWritten() {
+    return bytesWritten;
+  }
+
+  public boolean isMultipart() {
+    return nonNull(uploadId);
+  }
+
+  private void ensureOpen() throws IOException {
+    if (closed) {
+      throw new IOException("Upload of " + key + " is already closed");
+    }
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > buffer.length) {
+      var size = Math.max(buffer.length, INITIAL_BUFFER_SIZE);
+      while (size < capacity) {
+        size *= 2;
+      }
+      buffer = Arrays.copyOf(buffer, Math.min(size, partSize));
+    }
+  }
+
+  private RequestBody bufferedBody() {
+    return RequestBody.fromInputStream(new ByteArrayInputStream(buffer, 0, buffered), buffered);
+  }
+
+  private void putObject() {
+    var request = headers.applyTo(PutObjectRequest.builder().bucket(bucket).key(key)).build();
+    s3Client.putObject(request, bufferedBody());
+  }
+
+  private void uploadPart() {
+    try {
+      if (isNull(uploadId)) {
+        uploadId = createMultipartUpload();
+      }
+      var partNumber = completedParts.size() + 1;
+      var request =
+          UploadPartRequest.builder()
+              .bucket(bucket)
+              .key(key)
+              .uploadId(uploadId)
+              .partNumber(partNumber)
+              .build();
+      var response = s3Client.uploadPart(request, bufferedBody());
+      completedParts.add(
+          CompletedPart.builder().partNumber(partNumber).eTag(response.eTag()).build());
+      buffered = 0;
+    } catch (RuntimeException e) {
+      abortUpload();
+      throw e;
+    }
+  }
+
+  private String createMultipartUpload() {
+    var request =
+        headers.applyTo(CreateMultipartUploadRequest.builder().bucket(bucket).key(key)).build();
+    return s3Client.createMultipartUpload(request).uploadId();
+  }
+
+  private void completeMultipartUpload() {
+    try {
+      var request =
+          CompleteMultipartUploadRequest.builder()
+              .bucket(bucket)
+              .key(key)
+              .uploadId(uploadId)
+              .multipartUpload(upload -> upload.parts(completedParts))
+              .build();
+      s3Client.completeMultipartUpload(request);
+    } catch (RuntimeException e) {
+      abortUpload();
+      throw e;
+    }
+  }
+
+  private void abortUpload() {
+    closed = true;
+    buffered = 0;
+    if (nonNull(uploadId)) {
+      s3Client.abortMultipartUpload(
+          AbortMultipartUploadRequest.builder().bucket(bucket).key(key).uploadId(uploadId).build());
+    }
+  }
+}
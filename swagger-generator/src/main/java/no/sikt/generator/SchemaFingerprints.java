@@ -0,0 +1,176 @@
+package no.sikt.generator;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static nva.commons.core.attempt.Try.attempt;
+
+import io.swagger.v3.oas.models.media.Schema;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Canonical structural fingerprints of schemas, used instead of the deep, recursive {@link
+ * Schema#equals} wherever schemas are compared. A fingerprint is a 128-bit hash over a normalized
+ * walk of a schema, with properties in key order and {@code $ref} treated as a leaf. The walk only
+ * covers fields that {@code equals} compares, and leaves out values such as examples whose textual
+ * form can differ while they are equal, so equal schemas always share a fingerprint. Different
+ * fingerprints prove that two schemas differ, while equal fingerprints are confirmed with {@code
+ * equals}.
+ *
+ * <p>Fingerprints are memoized per schema instance. A schema changed in place, for example by
+ * renaming a {@code $ref} inside it, must be {@link #forget forgotten}.
+ */
+public class SchemaFingerprints {
+
+  private static final int FINGERPRINT_BYTES = 16;
+  private static final byte FIELD_SEPARATOR = 0;
+  private static final byte BEGIN = 1;
+  private static final byte END = 2;
+  private final Map<Schema, Fingerprint> fingerprints =
+      Collections.synchronizedMap(new IdentityHashMap<>());
+
+  public record Fingerprint(long high, long low) {}
+
+  public Fingerprint of(Schema schema) {
+    var fingerprint = fingerprints.get(schema);
+    if (isNull(fingerprint)) {
+      fingerprint = compute(schema);
+      fingerprints.put(schema, fingerprint);
+    }
+    return fingerprint;
+  }
+
+  /** Whether the two schemas are equal, comparing them in full only when their fingerprints do. */
+  public boolean areEqual(Schema schema, Schema other) {
+    if (schema == other) {
+      return true;
+    }
+    if (isNull(schema) || isNull(other)) {
+      return false;
+    }
+    return of(schema).equals(of(other)) && schema.equals(other);
+  }
+
+  public void forget(Collection<Schema> schemas) {
+    schemas.forEach(fingerprints::remove);
+  }
+
+  private static Fingerprint compute(Schema schema) {
+    var digest = attempt(() -> MessageDigest.getInstance("SHA-256")).orElseThrow();
+    walk(digest, schema);
+    var hash = ByteBuffer.wrap(digest.digest(), 0, FINGERPRINT_BYTES);
+    return new Fingerprint(hash.getLong(), hash.getLong());
+  }
+
+  private static void walk(MessageDigest digest, Schema schema) {
+    if (isNull(schema)) {
+      digest.update(FIELD_SEPARATOR);
+      return;
+    }
+    digest.update(BEGIN);
+    field(digest, "class", schema.getClass().getName());
+    field(digest, "$ref", schema.get$ref());
+    if (nonNull(schema.get$ref())) {
+      digest.update(END);
+      return;
+    }
+    field(digest, "type", schema.getType());
+    field(digest, "types", sorted(schema.getTypes()));
+    field(digest, "format", schema.getFormat());
+    field(digest, "title", schema.getTitle());
+    field(digest, "description", schema.getDescription());
+    field(digest, "nullable", schema.getNullable());
+    field(digest, "readOnly", schema.getReadOnly());
+    field(digest, "writeOnly", schema.getWriteOnly());
+    field(digest, "deprecated", schema.getDeprecated());
+    field(digest, "required", schema.getRequired());
+    field(digest, "enum", primitives(schema.getEnum()));
+    field(digest, "pattern", schema.getPattern());
+    field(digest, "minimum", schema.getMinimum());
+    field(digest, "maximum", schema.getMaximum());
+    field(digest, "minLength", schema.getMinLength());
+    field(digest, "maxLength", schema.getMaxLength());
+    field(digest, "minItems", schema.getMinItems());
+    field(digest, "maxItems", schema.getMaxItems());
+    field(digest, "uniqueItems", schema.getUniqueItems());
+    field(digest, "extensions", keys(schema.getExtensions()));
+    nested(digest, "items", schema.getItems());
+    nested(digest, "not", schema.getNot());
+    nested(digest, "allOf", schema.getAllOf());
+    nested(digest, "anyOf", schema.getAnyOf());
+    nested(digest, "oneOf", schema.getOneOf());
+    properties(digest, schema.getProperties());
+    if (schema.getAdditionalProperties() instanceof Schema additionalProperties) {
+      nested(digest, "additionalProperties", additionalProperties);
+    } else {
+      field(digest, "additionalProperties", schema.getAdditionalProperties());
+    }
+    digest.update(END);
+  }
+
+  private static void properties(MessageDigest digest, Map<String, Schema> properties) {
+    if (isNull(properties)) {
+      return;
+    }
+    field(digest, "properties", properties.size());
+    new TreeMap<>(properties)
+        .forEach(
+            (name, property) -> {
+              field(digest, "property", name);
+              walk(digest, property);
+            });
+  }
+
+  private static void nested(MessageDigest digest, String name, Schema schema) {
+    if (nonNull(schema)) {
+      field(digest, name, "");
+      walk(digest, schema);
+    }
+  }
+
+  private static void nested(MessageDigest digest, String name, List<Schema> schemas) {
+    if (nonNull(schemas)) {
+      field(digest, name, schemas.size());
+      schemas.forEach(schema -> walk(digest, schema));
+    }
+  }
+
+  private static void field(MessageDigest digest, String name, Object value) {
+    if (nonNull(value)) {
+      digest.update(name.getBytes(UTF_8));
+      digest.update(FIELD_SEPARATOR);
+      digest.update(String.valueOf(value).getBytes(UTF_8));
+      digest.update(FIELD_SEPARATOR);
+    }
+  }
+
+  private static Object primitives(List<?> values) {
+    if (isNull(values)) {
+      return null;
+    }
+    return values.stream()
+        .map(
+            value ->
+                value instanceof CharSequence || value instanceof Number || value instanceof Boolean
+                    ? value
+                    : value.getClass().getName())
+        .toList();
+  }
+
+  private static Object sorted(Set<String> values) {
+    return isNull(values) ? null : new TreeSet<>(values);
+  }
+
+  private static Object keys(Map<String, Object> map) {
+    return isNull(map) ? null : new TreeMap<>(map).keySet();
+  }
+}
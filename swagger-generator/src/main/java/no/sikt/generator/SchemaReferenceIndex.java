@@ -0,0 +1,159 @@
+package no.sikt.generator;
+
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static java.util.stream.Collectors.toSet;
+import static no.sikt.generator.OpenApiUtils.COMPONENTS_SCHEMAS;
+
+import io.swagger.v3.oas.models.Components;
+import io.swagger.v3.oas.models.OpenAPI;
+import io.swagger.v3.oas.models.Operation;
+import io.swagger.v3.oas.models.PathItem;
+import io.swagger.v3.oas.models.headers.Header;
+import io.swagger.v3.oas.models.media.Content;
+import io.swagger.v3.oas.models.media.MediaType;
+import io.swagger.v3.oas.models.media.Schema;
+import io.swagger.v3.oas.models.parameters.Parameter;
+import io.swagger.v3.oas.models.parameters.RequestBody;
+import io.swagger.v3.oas.models.responses.ApiResponse;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Reverse index from each component schema of an API to the schema nodes that refer to it, built
+ * in one traversal of the component schemas, parameters, responses, request bodies and headers,
+ * and of every path. Renaming a schema then only touches the nodes that hold a ref to it.
+ */
+public final class SchemaReferenceIndex {
+
+  private final Map<String, Set<Schema>> references = new HashMap<>();
+  private final Map<String, Set<String>> referrers = new HashMap<>();
+
+  private SchemaReferenceIndex() {}
+
+  public static SchemaReferenceIndex of(OpenAPI api) {
+    var index = new SchemaReferenceIndex();
+    var components = Optional.ofNullable(api.getComponents()).orElseGet(Components::new);
+    orEmpty(components.getSchemas()).forEach(index::addSchema);
+    orEmpty(components.getParameters()).values().forEach(index::addParameter);
+    orEmpty(components.getResponses()).values().forEach(index::addResponse);
+    orEmpty(components.getRequestBodies()).values().forEach(index::addRequestBody);
+    orEmpty(components.getHeaders()).values().forEach(index::addHeader);
+    orEmpty(api.getPaths()).values().forEach(index::addPathItem);
+    return index;
+  }
+
+  /** The names of the component schemas that refer to the named one from within themselves. */
+  public Set<String> referringSchemas(String name) {
+    return Collections.unmodifiableSet(referrers.getOrDefault(name, Set.of()));
+  }
+
+  /** Points every ref to a renamed schema at its new name, and updates the index to match. */
+  public void rename(Map<String, String> renames) {
+    Map<String, Set<Schema>> renamedReferences = new HashMap<>();
+    Map<String, Set<String>> renamedReferrers = new HashMap<>();
+    renames.forEach(
+        (oldName, newName) -> {
+          var nodes = references.remove(oldName);
+          if (nonNull(nodes)) {
+            nodes.forEach(node -> node.set$ref(COMPONENTS_SCHEMAS + newName));
+            renamedReferences.put(newName, nodes);
+          }
+          var owners = referrers.remove(oldName);
+          if (nonNull(owners)) {
+            renamedReferrers.put(newName, owners);
+          }
+        });
+    references.putAll(renamedReferences);
+    referrers.putAll(renamedReferrers);
+    referrers.replaceAll(
+        (name, owners) ->
+            owners.stream().map(owner -> renames.getOrDefault(owner, owner)).collect(toSet()));
+  }
+
+  private void addPathItem(PathItem pathItem) {
+    orEmpty(pathItem.getParameters()).forEach(this::addParameter);
+    pathItem.readOperations().forEach(this::addOperation);
+  }
+
+  private void addOperation(Operation operation) {
+    orEmpty(operation.getParameters()).forEach(this::addParameter);
+    addRequestBody(operation.getRequestBody());
+    orEmpty(operation.getResponses()).values().forEach(this::addResponse);
+  }
+
+  private void addParameter(Parameter parameter) {
+    if (nonNull(parameter)) {
+      addSchema(null, parameter.getSchema());
+      addContent(parameter.getContent());
+    }
+  }
+
+  private void addRequestBody(RequestBody requestBody) {
+    if (nonNull(requestBody)) {
+      addContent(requestBody.getContent());
+    }
+  }
+
+  private void addResponse(ApiResponse response) {
+    if (nonNull(response)) {
+      addContent(response.getContent());
+      orEmpty(response.getHeaders()).values().forEach(this::addHeader);
+    }
+  }
+
+  private void addHeader(Header header) {
+    if (nonNull(header)) {
+      addSchema(null, header.getSchema());
+      addContent(header.getContent());
+    }
+  }
+
+  private void addContent(Content content) {
+    orEmpty(content).values().stream()
+        .map(MediaType::getSchema)
+        .forEach(schema -> addSchema(null, schema));
+  }
+
+  /** Indexes the refs within a schema tree, owned by the named component schema, if any. */
+  private void addSchema(String owner, Schema root) {
+    if (isNull(root)) {
+      return;
+    }
+    Set<Schema> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+    var pending = new ArrayDeque<Schema>();
+    pending.add(root);
+    while (!pending.isEmpty()) {
+      var schema = pending.poll();
+      if (visited.add(schema)) {
+        OpenApiUtils.getSchemaName(schema.get$ref())
+            .ifPresent(name -> addReference(owner, name, schema));
+        OpenApiUtils.getChildSchemas(schema).forEach(pending::add);
+      }
+    }
+  }
+
+  private void addReference(String owner, String name, Schema schema) {
+    references
+        .computeIfAbsent(name, key -> Collections.newSetFromMap(new IdentityHashMap<>()))
+        .add(schema);
+    if (nonNull(owner)) {
+      referrers.computeIfAbsent(name, key -> new HashSet<>()).add(owner);
+    }
+  }
+
+  private static <K, V> Map<K, V> orEmpty(Map<K, V> map) {
+    return isNull(map) ? Map.of() : map;
+  }
+
+  private static <T> List<T> orEmpty(List<T> list) {
+    return isNull(list) ? List.of() : list;
+  }
+}
@@ -0,0 +1,101 @@
+package no.sikt.generator;
+
+import static java.util.Objects.nonNull;
+
+import io.swagger.v3.oas.models.Components;
+import io.swagger.v3.oas.models.OpenAPI;
+import io.swagger.v3.oas.models.media.Schema;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import org.apache.commons.text.CaseUtils;
+
+/**
+ * Plans the renames that give the schemas of a set of APIs unique names. A schema name the APIs do
+ * not agree on is prefixed with the API title, in camel case, in every API that has it. Renaming a
+ * schema changes the refs to it, so a schema that several APIs agree on is renamed as well when it
+ * refers to a renamed one. That closure is followed over the reverse refs of a global name table in
+ * one pass, rather than by comparing all schemas again after every round of renames.
+ */
+public class SchemaRenamePlanner {
+
+  public static final String RENAME_COLLISION = "API %s: renaming %s to %s collides with %s";
+  private final List<OpenAPI> apis;
+  private final List<SchemaReferenceIndex> indexes;
+  private final SchemaFingerprints fingerprints;
+
+  public SchemaRenamePlanner(
+      List<OpenAPI> apis, List<SchemaReferenceIndex> indexes, SchemaFingerprints fingerprints) {
+    this.apis = apis;
+    this.indexes = indexes;
+    this.fingerprints = fingerprints;
+  }
+
+  /** The old to new schema names of each API, in the order of the APIs. */
+  public List<Map<String, String>> plan() {
+    Map<String, List<Schema>> owners = new HashMap<>();
+    for (var api : apis) {
+      schemasOf(api)
+          .forEach(
+              (name, schema) -> owners.computeIfAbsent(name, key -> new ArrayList<>()).add(schema));
+    }
+
+    var renamed = findCollisions(owners);
+    var pending = new ArrayDeque<>(renamed);
+    while (!pending.isEmpty()) {
+      var name = pending.poll();
+      for (var index : indexes) {
+        for (var referrer : index.referringSchemas(name)) {
+          if (owners.get(referrer).size() > 1 && renamed.add(referrer)) {
+            pending.add(referrer);
+          }
+        }
+      }
+    }
+    return apis.stream().map(api -> renamesOf(api, renamed)).toList();
+  }
+
+  private Set<String> findCollisions(Map<String, List<Schema>> owners) {
+    Set<String> collisions = new TreeSet<>();
+    owners.forEach(
+        (name, schemas) -> {
+          var first = schemas.get(0);
+          if (schemas.stream().anyMatch(schema -> !fingerprints.areEqual(first, schema))) {
+            collisions.add(name);
+          }
+        });
+    return collisions;
+  }
+
+  private static Map<String, String> renamesOf(OpenAPI api, Set<String> renamed) {
+    var schemas = schemasOf(api);
+    var prefix = CaseUtils.toCamelCase(api.getInfo().getTitle(), true);
+    Map<String, String> renames = new LinkedHashMap<>();
+    schemas.keySet().stream()
+        .filter(renamed::contains)
+        .forEach(name -> renames.put(name, prefix + name));
+
+    Map<String, String> namesAfterRename = new HashMap<>();
+    for (var name : schemas.keySet()) {
+      var newName = renames.getOrDefault(name, name);
+      var other = namesAfterRename.put(newName, name);
+      if (nonNull(other)) {
+        throw new IllegalStateException(
+            String.format(RENAME_COLLISION, api.getInfo().getTitle(), name, newName, other));
+      }
+    }
+    return renames;
+  }
+
+  private static Map<String, Schema> schemasOf(OpenAPI api) {
+    return Optional.ofNullable(api.getComponents())
+        .map(Components::getSchemas)
+        .orElse(Map.of());
+  }
+}
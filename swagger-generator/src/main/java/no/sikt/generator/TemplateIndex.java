@@ -0,0 +1,124 @@
+package no.sikt.generator;
+
+import static java.util.Objects.nonNull;
+import static nva.commons.core.attempt.Try.attempt;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import io.swagger.v3.core.util.Yaml;
+import io.swagger.v3.oas.models.OpenAPI;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.lang3.tuple.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+/**
+ * Index of the GitHub template docs by {@code info.title}. Building the index only streams each
+ * template up to its title, and titles are remembered by ETag for the lifetime of the container.
+ * A template is parsed in full only once an API actually matches it.
+ */
+public final class TemplateIndex {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(TemplateIndex.class);
+  private static final Map<String, Optional<String>> TITLES_BY_ETAG = new ConcurrentHashMap<>();
+  private static final String INFO = "info";
+  private static final String TITLE = "title";
+  private final TemplateStore templateStore;
+  private final ParsedOpenApiCache parsedOpenApiCache = ParsedOpenApiCache.getInstance();
+  private final Map<String, S3Object> templatesByTitle = new ConcurrentHashMap<>();
+  private final AtomicLong titlesScanned = new AtomicLong();
+  private final AtomicLong titlesCached = new AtomicLong();
+
+  private TemplateIndex(TemplateStore templateStore) {
+    this.templateStore = templateStore;
+  }
+
+  /**
+   * Indexes {@code templates}, which must be ordered oldest first. When several templates share a
+   * title, the oldest one wins. A template that cannot be read fails the whole index, since APIs
+   * would otherwise silently lose their documentation.
+   */
+  public static TemplateIndex build(
+      TemplateStore templateStore, List<S3Object> templates, ParallelMapper parallelMapper) {
+    var index = new TemplateIndex(templateStore);
+    parallelMapper
+        .mapAll(
+            templates, template -> index.titleOf(template).map(title -> Pair.of(title, template)))
+        .stream()
+        .flatMap(Optional::stream)
+        .forEach(entry -> index.templatesByTitle.putIfAbsent(entry.getLeft(), entry.getRight()));
+    LOGGER.info(
+        "Indexed {} template titles, {} scanned and {} known from their ETag",
+        index.templatesByTitle.size(),
+        index.titlesScanned.get(),
+        index.titlesCached.get());
+    return index;
+  }
+
+  public Optional<Pair<S3Object, OpenAPI>> findByTitle(String title) {
+    return Optional.ofNullable(templatesByTitle.get(title))
+        .map(template -> Pair.of(template, parse(template)));
+  }
+
+  public int size() {
+    return templatesByTitle.size();
+  }
+
+  static Optional<String> scanTitle(String content) throws IOException {
+    try (var parser = Yaml.mapper().getFactory().createParser(content)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        return Optional.empty();
+      }
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        var field = parser.currentName();
+        if (parser.nextToken() == JsonToken.START_OBJECT && INFO.equals(field)) {
+          return scanField(parser, TITLE);
+        }
+        parser.skipChildren();
+      }
+      return Optional.empty();
+    }
+  }
+
+  private static Optional<String> scanField(JsonParser parser, String name) throws IOException {
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      var field = parser.currentName();
+      parser.nextToken();
+      if (name.equals(field)) {
+        return Optional.ofNullable(parser.getValueAsString());
+      }
+      parser.skipChildren();
+    }
+    return Optional.empty();
+  }
+
+  private Optional<String> titleOf(S3Object template) {
+    if (nonNull(template.eTag()) && TITLES_BY_ETAG.containsKey(template.eTag())) {
+      titlesCached.incrementAndGet();
+      return TITLES_BY_ETAG.get(template.eTag());
+    }
+    titlesScanned.incrementAndGet();
+    var content = templateStore.read(template);
+    var title =
+        attempt(() -> scanTitle(content))
+            .orElseThrow(
+                failure ->
+                    new IllegalStateException(
+                        "Could not read title of template " + template.key(),
+                        failure.getException()));
+    if (nonNull(template.eTag())) {
+      TITLES_BY_ETAG.put(template.eTag(), title);
+    }
+    return title;
+  }
+
+  private OpenAPI parse(S3Object template) {
+    return parsedOpenApiCache.parse(templateStore.read(template), ExportFormat.YAML);
+  }
+}
@@ -0,0 +1,193 @@
+package no.sikt.generator;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static nva.commons.core.attempt.Try.attempt;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.core.sync.ResponseTransformer;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+/**
+ * Lists and reads the GitHub template docs. Content is cached by key and ETag, in memory and in
+ * the Lambda's {@code /tmp}, so only new or changed templates are downloaded. A warm run where no
+ * template changed makes no GET calls at all.
+ */
+public class TemplateStore {
+
+  public static final String TEMPLATE_SUFFIX = ".yaml";
+  private static final Logger LOGGER = LoggerFactory.getLogger(TemplateStore.class);
+  private final S3Client s3Client;
+  private final String bucket;
+  private final Path cacheDirectory;
+  private final Map<String, String> contents = new ConcurrentHashMap<>();
+  private final AtomicLong memoryHits = new AtomicLong();
+  private final AtomicLong diskHits = new AtomicLong();
+  private final AtomicLong downloads = new AtomicLong();
+
+  public TemplateStore(S3Client s3Client, String bucket, Path cacheDirectory) {
+    this.s3Client = s3Client;
+    this.bucket = bucket;
+    this.cacheDirectory = cacheDirectory;
+  }
+
+  public static Path defaultCacheDirectory(String bucket) {
+    return Path.of(System.getProperty("java.io.tmpdir"), "template-cache", bucket);
+  }
+
+  /** Lists every template in the bucket, oldest first, following continuation tokens. */
+  public List<S3Object> listTemplates() {
+    var templates =
+        Stream.iterate(listPage(null), Objects::nonNull, this::nextPage)
+            .flatMap(page -> page.contents().stream())
+            .filter(s3Object -> s3Object.key().endsWith(TEMPLATE_SUFFIX))
+            .sorted(
+                Comparator.comparing(
+                    S3Object::lastModified, Comparator.nullsFirst(Comparator.naturalOrder())))
+            .toList();
+    forgetStaleTemplates(templates);
+    return templates;
+  }
+
+  public String read(S3Object template) {
+    if (isNull(template.eTag())) {
+      return download(template);
+    }
+    var cacheKey = cacheKey(template);
+    var cached = contents.get(cacheKey);
+    if (nonNull(cached)) {
+      memoryHits.incrementAndGet();
+      return cached;
+    }
+    // loaded outside the map, so no map lock is held while blocking on disk or S3
+    var loaded = readFromDiskOrDownload(template, cacheKey);
+    var raced = contents.putIfAbsent(cacheKey, loaded);
+    return isNull(raced) ? loaded : raced;
+  }
+
+  public long getDownloads() {
+    return downloads.get();
+  }
+
+  public long getDiskHits() {
+    return diskHits.get();
+  }
+
+  public long getMemoryHits() {
+    return memoryHits.get();
+  }
+
+  public void logStatistics() {
+    LOGGER.info(
+        "Template store downloads: {}, read from /tmp: {}, read from memory: {}",
+        getDownloads(),
+        getDiskHits(),
+        getMemoryHits());
+  }
+
+  private ListObjectsV2Response listPage(String continuationToken) {
+    var request =
+        ListObjectsV2Request.builder().bucket(bucket).continuationToken(continuationToken).build();
+    return s3Client.listObjectsV2(request);
+  }
+
+  private ListObjectsV2Response nextPage(ListObjectsV2Response page) {
+    return Boolean.TRUE.equals(page.isTruncated()) ? listPage(page.nextContinuationToken()) : null;
+  }
+
+  private String readFromDiskOrDownload(S3Object template, String cacheKey) {
+    var file = cacheDirectory.resolve(fileName(cacheKey));
+    var fromDisk = attempt(() -> Files.readString(file)).toOptional();
+    if (fromDisk.isPresent()) {
+      diskHits.incrementAndGet();
+      return fromDisk.get();
+    }
+    var content = download(template);
+    writeToDisk(file, content);
+    return content;
+  }
+
+  private String download(S3Object template) {
+    downloads.incrementAndGet();
+    var request = GetObjectRequest.builder().bucket(bucket).key(template.key()).build();
+    return s3Client.getObject(request, ResponseTransformer.toBytes()).asUtf8String();
+  }
+
+  private void writeToDisk(Path file, String content) {
+    attempt(
+            () -> {
+              Files.createDirectories(cacheDirectory);
+              return Files.writeString(file, content);
+            })
+        .orElse(
+            failure -> {
+              LOGGER.warn("Could not cache template in {}", file, failure.getException());
+              return null;
+            });
+  }
+
+  /**
+   * Drops cached content of templates that were changed or removed since they were read, from
+   * memory and from {@code /tmp}, so the cache only ever holds the current version of a template.
+   */
+  private void forgetStaleTemplates(List<S3Object> templates) {
+    Set<String> current =
+        templates.stream()
+            .filter(template -> nonNull(template.eTag()))
+            .map(TemplateStore::cacheKey)
+            .collect(Collectors.toSet());
+    contents.keySet().retainAll(current);
+    deleteStaleFiles(current.stream().map(TemplateStore::fileName).collect(Collectors.toSet()));
+  }
+
+  private void deleteStaleFiles(Set<String> currentFileNames) {
+    // a missing directory just means that nothing was cached yet
+    attempt(() -> listFiles(cacheDirectory))
+        .orElse(failure -> List.<Path>of())
+        .stream()
+        .filter(file -> !currentFileNames.contains(file.getFileName().toString()))
+        .forEach(TemplateStore::deleteFile);
+  }
+
+  private static List<Path> listFiles(Path directory) throws IOException {
+    try (var files = Files.list(directory)) {
+      return files.toList();
+    }
+  }
+
+  private static void deleteFile(Path file) {
+    attempt(() -> Files.deleteIfExists(file))
+        .orElse(
+            failure -> {
+              LOGGER.warn("Could not delete stale template {}", file, failure.getException());
+              return false;
+            });
+  }
+
+  private static String cacheKey(S3Object template) {
+    return template.key() + "@" + template.eTag();
+  }
+
+  private static String fileName(String cacheKey) {
+    return URLEncoder.encode(cacheKey, UTF_8);
+  }
+}
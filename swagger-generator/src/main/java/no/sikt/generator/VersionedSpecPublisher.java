@@ -0,0 +1,194 @@
+package no.sikt.generator;
+
+import static java.util.Objects.nonNull;
+import static no.sikt.generator.ParallelMapper.VIRTUAL_THREADS;
+import static nva.commons.core.attempt.Try.attempt;
+
+import io.swagger.v3.core.util.Json;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+/**
+ * Publishes a generated spec under immutable, content-hashed keys such as {@code
+ * docs/openapi.<hash>.json}, and points to the current versions from a small manifest, {@code
+ * docs/openapi.manifest.json}. The versions are cached for a year and never invalidated, so only
+ * the manifest changes when the spec does. Versions the manifest no longer points to are deleted
+ * once they have been replaced for longer than the retention period, so clients still holding an
+ * older manifest can fetch what it points to.
+ */
+public class VersionedSpecPublisher {
+
+  public static final String MANIFEST_SUFFIX = ".manifest.json";
+  public static final String IMMUTABLE_CACHE_CONTROL = "public, max-age=31536000, immutable";
+  private static final int HASH_LENGTH = 16;
+  private static final long MEBIBYTE = 1024 * 1024;
+  private static final Logger LOGGER = LoggerFactory.getLogger(VersionedSpecPublisher.class);
+  private final S3Client s3Client;
+  private final ChangeDetectingWriter manifestWriter;
+  private final ChangeDetectingWriter versionWriter;
+  private final List<ExportFormat> formats;
+  private final List<ContentEncoding> encodings;
+  private final Duration retention;
+  private final AtomicLong deleted = new AtomicLong();
+  private final AtomicLong peakHeapBytes = new AtomicLong();
+
+  public VersionedSpecPublisher(
+      S3Client s3Client,
+      ChangeDetectingWriter manifestWriter,
+      List<ExportFormat> formats,
+      List<ContentEncoding> encodings,
+      Duration retention) {
+    this.s3Client = s3Client;
+    this.manifestWriter = manifestWriter;
+    this.versionWriter = new ChangeDetectingWriter(s3Client, IMMUTABLE_CACHE_CONTROL);
+    this.formats = formats;
+    this.encodings = encodings;
+    this.retention = retention;
+  }
+
+  public static String manifestKey(String basename) {
+    return basename + MANIFEST_SUFFIX;
+  }
+
+  /**
+   * Writes every format of {@code model} that is not published yet, points the manifest at them
+   * and deletes expired versions. The formats are serialized in parallel, and the peak heap use
+   * during that is logged, since the memory setting of the generators has to fit it.
+   *
+   * @return the keys that must be invalidated, which is the manifest if it changed
+   */
+  public List<String> publish(String bucket, String basename, Object model) {
+    HeapUsage.resetPeak();
+    var versions =
+        formats.stream()
+            .map(
+                format ->
+                    CompletableFuture.supplyAsync(
+                        () -> writeVersion(bucket, basename, model, format), VIRTUAL_THREADS))
+            .toList();
+    var manifest =
+        new TreeMap<>(
+            versions.stream()
+                .map(CompletableFuture::join)
+                .collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue)));
+    var peakHeap = HeapUsage.peakBytes();
+    peakHeapBytes.accumulateAndGet(peakHeap, Math::max);
+    LOGGER.info("Peak heap while serializing {}: {} MiB", basename, peakHeap / MEBIBYTE);
+    var changed =
+        manifestWriter.write(
+            bucket, manifestKey(basename), toJson(manifest), List.of(ContentEncoding.IDENTITY));
+    deleteExpiredVersions(bucket, basename, Set.copyOf(manifest.values()));
+    return changed;
+  }
+
+  public long getDeleted() {
+    return deleted.get();
+  }
+
+  /** The highest peak heap use seen while serializing a spec, in bytes. */
+  public long getPeakHeapBytes() {
+    return peakHeapBytes.get();
+  }
+
+  public void logStatistics() {
+    versionWriter.logStatistics();
+    LOGGER.info("Expired spec versions deleted: {}", getDeleted());
+    LOGGER.info("Peak heap while serializing specs: {} MiB", getPeakHeapBytes() / MEBIBYTE);
+  }
+
+  private Map.Entry<String, String> writeVersion(
+      String bucket, String basename, Object model, ExportFormat format) {
+    var hash = versionWriter.hash(model, format);
+    var key = basename + "." + hash.substring(0, HASH_LENGTH) + "." + format.getExtension();
+    versionWriter.writeModel(bucket, key, model, format, hash, encodings);
+    return Map.entry(format.getExtension(), key);
+  }
+
+  private static String toJson(Map<String, String> manifest) {
+    return attempt(() -> Json.mapper().writeValueAsString(manifest)).orElseThrow();
+  }
+
+  /**
+   * Deletes the versions that stopped being current longer than the retention period ago. A
+   * version stops being current when the next version of the same format and encoding is
+   * published, so that is what it is aged from; the newest version is never deleted.
+   */
+  private void deleteExpiredVersions(String bucket, String basename, Set<String> current) {
+    var referenced =
+        current.stream()
+            .flatMap(key -> encodings.stream().map(encoding -> encoding.toKey(key)))
+            .collect(Collectors.toSet());
+    var versionKey =
+        Pattern.compile(Pattern.quote(basename) + "\\.[0-9a-f]{" + HASH_LENGTH + "}\\.(.+)");
+    var cutoff = Instant.now().minus(retention);
+    Stream.iterate(
+            listPage(bucket, basename, null),
+            Objects::nonNull,
+            page -> nextPage(bucket, basename, page))
+        .flatMap(page -> page.contents().stream())
+        .filter(version -> nonNull(version.lastModified()))
+        .filter(version -> versionKey.matcher(version.key()).matches())
+        .collect(Collectors.groupingBy(version -> suffix(versionKey, version)))
+        .values()
+        .forEach(versions -> deleteSuperseded(bucket, versions, referenced, cutoff));
+  }
+
+  private static String suffix(Pattern versionKey, S3Object version) {
+    var matcher = versionKey.matcher(version.key());
+    return matcher.matches() ? matcher.group(1) : version.key();
+  }
+
+  private void deleteSuperseded(
+      String bucket, List<S3Object> versions, Set<String> referenced, Instant cutoff) {
+    var oldestFirst =
+        versions.stream().sorted(Comparator.comparing(S3Object::lastModified)).toList();
+    for (var i = 0; i < oldestFirst.size() - 1; i++) {
+      var version = oldestFirst.get(i);
+      var supersededAt = oldestFirst.get(i + 1).lastModified();
+      if (!referenced.contains(version.key()) && supersededAt.isBefore(cutoff)) {
+        delete(bucket, version);
+      }
+    }
+  }
+
+  private void delete(String bucket, S3Object version) {
+    LOGGER.info("Deleting expired spec version {}/{}", bucket, version.key());
+    s3Client.deleteObject(DeleteObjectRequest.builder().bucket(bucket).key(version.key()).build());
+    deleted.incrementAndGet();
+  }
+
+  private ListObjectsV2Response listPage(String bucket, String basename, String continuationToken) {
+    var request =
+        ListObjectsV2Request.builder()
+            .bucket(bucket)
+            .prefix(basename + ".")
+            .continuationToken(continuationToken)
+            .build();
+    return s3Client.listObjectsV2(request);
+  }
+
+  private ListObjectsV2Response nextPage(
+      String bucket, String basename, ListObjectsV2Response page) {
+    return Boolean.TRUE.equals(page.isTruncated())
+        ? listPage(bucket, basename, page.nextContinuationToken())
+        : null;
+  }
+}
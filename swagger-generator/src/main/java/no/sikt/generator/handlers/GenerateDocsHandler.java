@@ -1,54 +1,75 @@
 package no.sikt.generator.handlers;
 
+import static no.sikt.generator.ApplicationConstants.API_FETCH_CONCURRENCY;
+import static no.sikt.generator.ApplicationConstants.EXPORT_CACHE_BUCKET_NAME;
+import static no.sikt.generator.ApplicationConstants.EXPORT_FORMAT;
 import static no.sikt.generator.ApplicationConstants.EXPORT_STAGE_PROD;
+import static no.sikt.generator.ApplicationConstants.SPEC_CACHE_CONTROL;
+import static no.sikt.generator.ApplicationConstants.SPEC_RETENTION_DAYS;
 import static no.sikt.generator.ApplicationConstants.readOpenApiBucketName;
-import static nva.commons.core.attempt.Try.attempt;
+import static no.sikt.generator.ParallelMapper.VIRTUAL_THREADS;
 
 import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
 import io.swagger.v3.oas.models.OpenAPI;
-import io.swagger.v3.parser.OpenAPIV3Parser;
-import java.util.Comparator;
+import java.time.Duration;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Supplier;
+import java.util.stream.Stream;
 import no.sikt.generator.ApiData;
 import no.sikt.generator.ApiGatewayAsyncClientSupplier;
 import no.sikt.generator.ApiGatewayHighLevelClient;
+import no.sikt.generator.AwsClientRegistry;
+import no.sikt.generator.ChangeDetectingWriter;
 import no.sikt.generator.CloudFrontClientSupplier;
 import no.sikt.generator.CloudFrontHighLevelClient;
+import no.sikt.generator.ContentEncoding;
+import no.sikt.generator.ExportCache;
+import no.sikt.generator.ExportFormat;
 import no.sikt.generator.OpenApiValidator;
-import no.unit.nva.s3.S3Driver;
+import no.sikt.generator.ParallelMapper;
+import no.sikt.generator.ParsedOpenApiCache;
+import no.sikt.generator.S3ClientSupplier;
+import no.sikt.generator.TemplateIndex;
+import no.sikt.generator.TemplateStore;
+import no.sikt.generator.VersionedSpecPublisher;
 import nva.commons.core.JacocoGenerated;
-import nva.commons.core.paths.UnixPath;
-import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import software.amazon.awssdk.core.sync.ResponseTransformer;
 import software.amazon.awssdk.services.apigateway.ApiGatewayAsyncClient;
 import software.amazon.awssdk.services.apigateway.model.RestApi;
 import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.GetObjectRequest;
-import software.amazon.awssdk.services.s3.model.ListObjectsRequest;
-import software.amazon.awssdk.services.s3.model.S3Object;
 
 public abstract class GenerateDocsHandler implements RequestStreamHandler {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(GenerateDocsHandler.class);
+  private static final List<ExportFormat> SPEC_FORMATS =
+      List.of(ExportFormat.YAML, ExportFormat.JSON);
+  private static final List<ContentEncoding> SPEC_ENCODINGS =
+      List.of(ContentEncoding.IDENTITY, ContentEncoding.GZIP);
   ApiGatewayHighLevelClient apiGatewayHighLevelClient;
   CloudFrontHighLevelClient cloudFrontHighLevelClient;
   S3Client s3ClientOutput;
   S3Client s3ClientInput;
   final OpenApiValidator openApiValidator = new OpenApiValidator();
-  final OpenAPIV3Parser openApiParser = new OpenAPIV3Parser();
+  final ParsedOpenApiCache parsedOpenApiCache = ParsedOpenApiCache.getInstance();
   final String openApiBucketName = readOpenApiBucketName();
+  final ParallelMapper parallelMapper = new ParallelMapper(API_FETCH_CONCURRENCY);
+  final TemplateStore templateStore;
+  final ChangeDetectingWriter changeDetectingWriter;
+  final VersionedSpecPublisher specPublisher;
+  private final AtomicLong invalidationsSent = new AtomicLong();
+  private final AtomicLong invalidationsAvoided = new AtomicLong();
 
   @JacocoGenerated
   protected GenerateDocsHandler() {
-    this.apiGatewayHighLevelClient =
-        new ApiGatewayHighLevelClient(ApiGatewayAsyncClientSupplier.getSupplier());
-    this.cloudFrontHighLevelClient =
-        new CloudFrontHighLevelClient(CloudFrontClientSupplier.getSupplier());
-    this.s3ClientInput = S3Driver.defaultS3Client().build();
-    this.s3ClientOutput = S3Driver.defaultS3Client().build();
+    this(
+        ApiGatewayAsyncClientSupplier.getSupplier(),
+        new CloudFrontHighLevelClient(CloudFrontClientSupplier.getSupplier()),
+        S3ClientSupplier.getSupplier().get(),
+        S3ClientSupplier.getSupplier().get());
   }
 
   protected GenerateDocsHandler(
@@ -56,43 +77,102 @@ public abstract class GenerateDocsHandler implements RequestStreamHandler {
       CloudFrontHighLevelClient cloudFrontHighLevelClient,
       S3Client s3ClientOutput,
       S3Client s3ClientInput) {
-    this.apiGatewayHighLevelClient = new ApiGatewayHighLevelClient(apiGatewayAsyncClientSupplier);
+    this.apiGatewayHighLevelClient =
+        new ApiGatewayHighLevelClient(
+            apiGatewayAsyncClientSupplier,
+            new ExportCache(s3ClientOutput, EXPORT_CACHE_BUCKET_NAME));
     this.cloudFrontHighLevelClient = cloudFrontHighLevelClient;
     this.s3ClientOutput = s3ClientOutput;
     this.s3ClientInput = s3ClientInput;
+    this.templateStore =
+        new TemplateStore(
+            s3ClientInput,
+            openApiBucketName,
+            TemplateStore.defaultCacheDirectory(openApiBucketName));
+    this.changeDetectingWriter = new ChangeDetectingWriter(s3ClientOutput, SPEC_CACHE_CONTROL);
+    this.specPublisher =
+        new VersionedSpecPublisher(
+            s3ClientOutput,
+            changeDetectingWriter,
+            SPEC_FORMATS,
+            SPEC_ENCODINGS,
+            Duration.ofDays(SPEC_RETENTION_DAYS));
   }
 
-  List<Pair<S3Object, OpenAPI>> getTemplateOpenApiDocs() {
-    var listing =
-        s3ClientInput
-            .listObjects(
-                ListObjectsRequest.builder().bucket(openApiBucketName).maxKeys(1000).build())
-            .contents()
-            .stream()
-            .filter(s3Object -> s3Object.key().endsWith(".yaml"))
-            .sorted(Comparator.comparing(S3Object::lastModified))
-            .toList();
-    LOGGER.info("Found " + listing.size() + " .yaml files");
-    return listing.stream()
-        .map(s3Object -> Pair.of(s3Object, getOpenApiFromFilePath(s3Object)))
-        .toList();
+  /**
+   * Starts indexing the GitHub template docs on a virtual thread, so that it overlaps with fetching
+   * the API Gateway exports instead of adding to the critical path.
+   */
+  CompletableFuture<TemplateIndex> loadTemplateIndex() {
+    return CompletableFuture.supplyAsync(this::getTemplateIndex, VIRTUAL_THREADS);
+  }
+
+  TemplateIndex getTemplateIndex() {
+    var templates = templateStore.listTemplates();
+    LOGGER.info("Found " + templates.size() + " .yaml files");
+    return TemplateIndex.build(templateStore, templates, parallelMapper);
+  }
+
+  OpenAPI parseYaml(String content) {
+    return parsedOpenApiCache.parse(content, ExportFormat.YAML);
+  }
+
+  /**
+   * Writes the file, plain and gzip encoded, if its content changed, and returns the keys that were
+   * actually written.
+   */
+  List<String> writeToS3(String bucket, String filename, String content) {
+    return changeDetectingWriter.write(bucket, filename, content, SPEC_ENCODINGS);
+  }
+
+  /**
+   * Publishes the model as content-hashed YAML and JSON files, plain and gzip encoded, and returns
+   * the keys that must be invalidated. Those are at most the manifest pointing to the new files.
+   */
+  List<String> writeSpecToS3(String bucket, String basename, OpenAPI openApi) {
+    return specPublisher.publish(bucket, basename, openApi);
   }
 
-  private OpenAPI getOpenApiFromFilePath(S3Object s3Object) {
-    var request = GetObjectRequest.builder().bucket(openApiBucketName).key(s3Object.key()).build();
-    var fileContent =
-        s3ClientInput.getObject(request, ResponseTransformer.toBytes()).asUtf8String();
-    return openApiParser.readContents(fileContent).getOpenAPI();
+  void invalidateChanged(String distributionId, List<String> changedKeys) {
+    if (changedKeys.isEmpty()) {
+      LOGGER.info("Published docs are unchanged - not invalidating {}", distributionId);
+      invalidationsAvoided.incrementAndGet();
+    } else {
+      cloudFrontHighLevelClient.invalidateKeys(distributionId, changedKeys);
+      invalidationsSent.incrementAndGet();
+    }
   }
 
-  void writeToS3(String bucket, String filename, String content) {
-    var s3Driver = new S3Driver(s3ClientOutput, bucket);
-    attempt(() -> s3Driver.insertFile(UnixPath.of(filename), content)).orElseThrow();
+  /**
+   * Fetches every API, and fails once all fetches are done if any of them failed, so a combined
+   * spec missing an API is never published. APIs without a prod stage are left out.
+   */
+  List<ApiData> fetchProdApiData(Stream<RestApi> restApis) {
+    return parallelMapper.mapAll(restApis.toList(), this::fetchProdApiData).stream()
+        .filter(Objects::nonNull)
+        .toList();
   }
 
   ApiData fetchProdApiData(RestApi restApi) {
     return apiGatewayHighLevelClient.fetchApiDataForStage(
-        restApi, EXPORT_STAGE_PROD, openApiParser);
+        restApi, EXPORT_STAGE_PROD, EXPORT_FORMAT);
+  }
+
+  /** Handlers are reused across warm invocations, so every run starts from zeroed counters. */
+  void resetClientStatistics() {
+    apiGatewayHighLevelClient.resetStatistics();
+  }
+
+  void logClientStatistics() {
+    AwsClientRegistry.getInstance().logStatistics();
+    apiGatewayHighLevelClient.logStatistics();
+    templateStore.logStatistics();
+    changeDetectingWriter.logStatistics();
+    specPublisher.logStatistics();
+    LOGGER.info(
+        "CloudFront invalidations: {} sent, {} avoided as unchanged",
+        invalidationsSent.get(),
+        invalidationsAvoided.get());
   }
 
   boolean apiShouldBeIncluded(ApiData apiData) {
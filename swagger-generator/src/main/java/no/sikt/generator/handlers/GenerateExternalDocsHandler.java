@@ -3,15 +3,11 @@ package no.sikt.generator.handlers;
 import static no.sikt.generator.ApplicationConstants.EXTERNAL_BUCKET_NAME;
 import static no.sikt.generator.ApplicationConstants.EXTERNAL_CLOUD_FRONT_DISTRIBUTION;
 import static no.sikt.generator.Utils.distinctByKey;
-import static nva.commons.core.attempt.Try.attempt;
 
 import com.amazonaws.services.lambda.runtime.Context;
-import io.swagger.v3.core.util.Yaml;
-import io.swagger.v3.oas.models.OpenAPI;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.List;
-import java.util.Objects;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -19,20 +15,14 @@ import no.sikt.generator.ApiData;
 import no.sikt.generator.CloudFrontHighLevelClient;
 import no.sikt.generator.OpenApiCombiner;
 import no.sikt.generator.OpenApiExtractor;
+import no.sikt.generator.TemplateIndex;
 import no.sikt.generator.Utils;
 import nva.commons.core.JacocoGenerated;
-import org.apache.commons.lang3.tuple.Pair;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import software.amazon.awssdk.services.apigateway.ApiGatewayAsyncClient;
-import software.amazon.awssdk.services.apigateway.model.GetRestApisResponse;
 import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.S3Object;
 
 public class GenerateExternalDocsHandler extends GenerateDocsHandler {
 
-  private static final Logger LOGGER = LoggerFactory.getLogger(GenerateExternalDocsHandler.class);
-
   @JacocoGenerated
   public GenerateExternalDocsHandler() {
     super();
@@ -48,35 +38,31 @@ public class GenerateExternalDocsHandler extends GenerateDocsHandler {
 
   @Override
   public void handleRequest(InputStream input, OutputStream output, Context context) {
-    var apis = apiGatewayHighLevelClient.getRestApis();
-
-    LOGGER.info(apis.toString());
+    resetClientStatistics();
+    var templateIndex = loadTemplateIndex();
 
-    var templateOpenapiDocs = getTemplateOpenApiDocs();
+    var apis = fetchProdApiData(apiGatewayHighLevelClient.streamRestApis());
 
-    var template = openApiParser.readContents(Utils.readResource("external.yaml")).getOpenAPI();
+    var template = parseYaml(Utils.readResource("external.yaml"));
 
     var swaggers =
-        validateAndFilterApis(apis, templateOpenapiDocs)
+        validateAndFilterApis(apis, templateIndex.join())
             .map(ApiData::getOpenapi)
             .collect(Collectors.toList());
 
     var onlyExternals = new OpenApiExtractor(swaggers).extract();
     var combined = new OpenApiCombiner(template, onlyExternals).combine();
 
-    String combinedYaml = attempt(() -> Yaml.pretty().writeValueAsString(combined)).orElseThrow();
-    writeToS3(EXTERNAL_BUCKET_NAME, "docs/openapi.yaml", combinedYaml);
-    cloudFrontHighLevelClient.invalidateAll(EXTERNAL_CLOUD_FRONT_DISTRIBUTION);
+    var changedKeys = writeSpecToS3(EXTERNAL_BUCKET_NAME, "docs/openapi", combined);
+    invalidateChanged(EXTERNAL_CLOUD_FRONT_DISTRIBUTION, changedKeys);
+    logClientStatistics();
   }
 
-  private Stream<ApiData> validateAndFilterApis(
-      GetRestApisResponse apis, List<Pair<S3Object, OpenAPI>> templateOpenapiDocs) {
-    return apis.items().stream()
-        .map(this::fetchProdApiData)
-        .filter(Objects::nonNull)
+  private Stream<ApiData> validateAndFilterApis(List<ApiData> apis, TemplateIndex templateIndex) {
+    return apis.stream()
         .filter(this::apiShouldBeIncluded)
         .peek(apiData -> openApiValidator.validateOpenApi(apiData.getOpenapi()))
-        .peek(apiData -> apiData.setMatchingGithubOpenapi(templateOpenapiDocs))
+        .peek(apiData -> apiData.setMatchingGithubOpenapi(templateIndex))
         .map(ApiData::applyEmptySchemasIfNull)
         .map(ApiData::overridePropsFromGithub)
         .sorted(ApiData::sortByDate)
@@ -4,35 +4,26 @@ import static no.sikt.generator.ApplicationConstants.INTERNAL_BUCKET_NAME;
 import static no.sikt.generator.ApplicationConstants.INTERNAL_CLOUD_FRONT_DISTRIBUTION;
 import static no.sikt.generator.Utils.distinctByKey;
 import static no.sikt.generator.Utils.toSnakeCase;
-import static nva.commons.core.attempt.Try.attempt;
 
 import com.amazonaws.services.lambda.runtime.Context;
-import io.swagger.v3.core.util.Yaml;
-import io.swagger.v3.oas.models.OpenAPI;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Objects;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import no.sikt.generator.ApiData;
 import no.sikt.generator.CloudFrontHighLevelClient;
 import no.sikt.generator.OpenApiCombiner;
+import no.sikt.generator.TemplateIndex;
 import no.sikt.generator.Utils;
 import nva.commons.core.JacocoGenerated;
-import org.apache.commons.lang3.tuple.Pair;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import software.amazon.awssdk.services.apigateway.ApiGatewayAsyncClient;
-import software.amazon.awssdk.services.apigateway.model.GetRestApisResponse;
 import software.amazon.awssdk.services.s3.S3Client;
-import software.amazon.awssdk.services.s3.model.S3Object;
 
 public class GenerateInternalDocsHandler extends GenerateDocsHandler {
 
-  private static final Logger LOGGER = LoggerFactory.getLogger(GenerateInternalDocsHandler.class);
-
   @JacocoGenerated
   public GenerateInternalDocsHandler() {
     super();
@@ -48,34 +39,30 @@ public class GenerateInternalDocsHandler extends GenerateDocsHandler {
 
   @Override
   public void handleRequest(InputStream input, OutputStream output, Context context) {
-    var apis = apiGatewayHighLevelClient.getRestApis();
-    LOGGER.info(apis.toString());
+    resetClientStatistics();
+    var templateIndex = loadTemplateIndex();
 
-    var templateOpenapiDocs = getTemplateOpenApiDocs();
+    var apis = fetchProdApiData(apiGatewayHighLevelClient.streamRestApis());
 
-    var template = openApiParser.readContents(Utils.readResource("internal.yaml")).getOpenAPI();
+    var template = parseYaml(Utils.readResource("internal.yaml"));
 
-    var swaggers =
-        validateAndFilterApis(apis, templateOpenapiDocs)
-            .peek(this::writeApiDocsToInternalS3)
-            .map(ApiData::getOpenapi)
-            .collect(Collectors.toList());
+    var includedApis = validateAndFilterApis(apis, templateIndex.join()).toList();
+    var changedKeys = new ArrayList<String>();
+    includedApis.forEach(apiData -> changedKeys.addAll(writeApiDocsToInternalS3(apiData)));
+    var swaggers = includedApis.stream().map(ApiData::getOpenapi).collect(Collectors.toList());
 
     var combined = new OpenApiCombiner(template, swaggers).combine();
 
-    String combinedYaml = attempt(() -> Yaml.pretty().writeValueAsString(combined)).orElseThrow();
-    writeToS3(INTERNAL_BUCKET_NAME, "docs/openapi.yaml", combinedYaml);
-    cloudFrontHighLevelClient.invalidateAll(INTERNAL_CLOUD_FRONT_DISTRIBUTION);
+    changedKeys.addAll(writeSpecToS3(INTERNAL_BUCKET_NAME, "docs/openapi", combined));
+    invalidateChanged(INTERNAL_CLOUD_FRONT_DISTRIBUTION, changedKeys);
+    logClientStatistics();
   }
 
-  private Stream<ApiData> validateAndFilterApis(
-      GetRestApisResponse apis, List<Pair<S3Object, OpenAPI>> templateOpenapiDocs) {
-    return apis.items().stream()
-        .map(this::fetchProdApiData)
-        .filter(Objects::nonNull)
+  private Stream<ApiData> validateAndFilterApis(List<ApiData> apis, TemplateIndex templateIndex) {
+    return apis.stream()
         .filter(this::apiShouldBeIncluded)
         .peek(apiData -> openApiValidator.validateOpenApi(apiData.getOpenapi()))
-        .peek(apiData -> apiData.setMatchingGithubOpenapi(templateOpenapiDocs))
+        .peek(apiData -> apiData.setMatchingGithubOpenapi(templateIndex))
         .map(ApiData::applyEmptySchemasIfNull)
         .map(ApiData::overridePropsFromGithub)
         .sorted(ApiData::sortByDate)
@@ -84,8 +71,8 @@ public class GenerateInternalDocsHandler extends GenerateDocsHandler {
         .sorted(ApiData::sortByName);
   }
 
-  private void writeApiDocsToInternalS3(ApiData apiData) {
+  private List<String> writeApiDocsToInternalS3(ApiData apiData) {
     var yamlFilename = "docs/" + toSnakeCase(apiData.getAwsRestApi().name()) + ".yaml";
-    writeToS3(INTERNAL_BUCKET_NAME, yamlFilename, apiData.getRawYaml());
+    return writeToS3(INTERNAL_BUCKET_NAME, yamlFilename, apiData.getRawYaml());
   }
 }
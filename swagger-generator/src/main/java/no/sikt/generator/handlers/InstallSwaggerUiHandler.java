@@ -1,15 +1,16 @@
 package no.sikt.generator.handlers;
 
 import static java.net.http.HttpClient.Redirect.ALWAYS;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.Objects.nonNull;
 import static no.sikt.generator.ApplicationConstants.EXTERNAL_BUCKET_NAME;
 import static no.sikt.generator.ApplicationConstants.INTERNAL_BUCKET_NAME;
+import static no.sikt.generator.ParallelMapper.VIRTUAL_THREADS;
 import static nva.commons.core.attempt.Try.attempt;
 
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -18,33 +19,53 @@ import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
 import java.net.http.HttpResponse.BodyHandlers;
-import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 import no.sikt.generator.GithubApiResponse;
+import no.sikt.generator.S3ClientSupplier;
 import no.sikt.generator.Utils;
-import no.unit.nva.s3.S3Driver;
 import nva.commons.core.JacocoGenerated;
-import nva.commons.core.ioutils.IoUtils;
-import nva.commons.core.paths.UnixPath;
+import org.apache.commons.lang3.tuple.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import software.amazon.awssdk.core.sync.RequestBody;
 import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
 import software.amazon.awssdk.services.s3.model.PutObjectRequest;
-
-@JacocoGenerated
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+/**
+ * Installs the latest swagger-ui release in the swagger buckets. The installed release is recorded
+ * in each bucket, and GitHub is asked for the latest release with the recorded ETag, so a run where
+ * nothing was released downloads nothing. Assets are copied as raw bytes, and only those whose MD5
+ * differs from the ETag of the object already in S3 are uploaded, to both buckets in parallel.
+ */
 public class InstallSwaggerUiHandler implements RequestStreamHandler {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(InstallSwaggerUiHandler.class);
   public static final String SWAGGER_INITIALIZER_JS = "swagger-initializer.js";
+  public static final String RELEASE_MARKER = "swagger-ui-release.json";
+  private static final int OK = 200;
+  private static final int NOT_MODIFIED = 304;
+  private static final List<String> BUCKETS = List.of(EXTERNAL_BUCKET_NAME, INTERNAL_BUCKET_NAME);
   private final S3Client s3Client;
   ObjectMapper mapper = new ObjectMapper();
   HttpClient httpClient;
 
+  @JacocoGenerated
   public InstallSwaggerUiHandler() {
     this.httpClient = HttpClient.newBuilder().followRedirects(ALWAYS).build();
-    this.s3Client = S3Driver.defaultS3Client().build();
+    this.s3Client = S3ClientSupplier.getSupplier().get();
   }
 
   public InstallSwaggerUiHandler(HttpClient httpClient, S3Client s3Client) {
@@ -52,25 +73,15 @@ public class InstallSwaggerUiHandler implements RequestStreamHandler {
     this.s3Client = s3Client;
   }
 
-  private RequestBody createRequestBody(InputStream input) throws IOException {
-    var bytes = IoUtils.inputStreamToBytes(input);
-    return RequestBody.fromBytes(bytes);
-  }
-
-  private void writeToS3(String bucket, String filename, String content) {
-    var fullPath = UnixPath.of(filename);
+  private void writeToS3(String bucket, String filename, byte[] content) {
+    LOGGER.info("Copying file {} to {}", filename, bucket);
     var putObjectRequest =
         PutObjectRequest.builder()
             .bucket(bucket)
-            .key(fullPath.toString())
+            .key(filename)
             .contentType(getContentTypeFromFilename(filename))
             .build();
-    attempt(
-            () -> {
-              var inputStream = IoUtils.stringToStream(content);
-              return s3Client.putObject(putObjectRequest, createRequestBody(inputStream));
-            })
-        .orElseThrow();
+    s3Client.putObject(putObjectRequest, RequestBody.fromBytes(content));
   }
 
   private static String getContentTypeFromFilename(String filename) {
@@ -86,71 +97,137 @@ public class InstallSwaggerUiHandler implements RequestStreamHandler {
     if (filename.endsWith(".js")) {
       return "application/javascript";
     }
+    if (filename.endsWith(".json") || filename.endsWith(".map")) {
+      return "application/json";
+    }
     return null;
   }
 
   @Override
   public void handleRequest(InputStream input, OutputStream output, Context context) {
-    var downloadUri = fetchDownloadUri();
-    LOGGER.info("Downloading from {}", downloadUri);
+    var newRelease = fetchNewRelease(readInstalledRelease());
+    var publishedHashes =
+        BUCKETS.stream().collect(Collectors.toMap(Function.identity(), this::listPublishedHashes));
+    var uploads = new ArrayList<CompletableFuture<Void>>();
+
+    var initializer = Utils.readResource(SWAGGER_INITIALIZER_JS).getBytes(UTF_8);
+    uploads.addAll(uploadIfChanged(publishedHashes, SWAGGER_INITIALIZER_JS, initializer));
+
+    newRelease.ifPresent(
+        release -> {
+          var downloadUri = URI.create(release.getLeft().zipUrl);
+          LOGGER.info("Downloading {} from {}", release.getRight().tag(), downloadUri);
+          uploads.addAll(downloadAndUpload(downloadUri, publishedHashes));
+        });
+
+    CompletableFuture.allOf(uploads.toArray(CompletableFuture[]::new)).join();
+    LOGGER.info("Uploaded {} changed objects", uploads.size());
+    newRelease.ifPresent(release -> BUCKETS.forEach(b -> writeRelease(b, release.getRight())));
+  }
 
-    var downloadRequest = HttpRequest.newBuilder().uri(downloadUri).GET().build();
+  private Optional<SwaggerUiRelease> readInstalledRelease() {
+    var installed = BUCKETS.stream().map(this::readRelease).distinct().toList();
+    return installed.size() == 1 ? installed.get(0) : Optional.empty();
+  }
 
-    httpClient
+  private Optional<SwaggerUiRelease> readRelease(String bucket) {
+    var request = GetObjectRequest.builder().bucket(bucket).key(RELEASE_MARKER).build();
+    return attempt(() -> s3Client.getObjectAsBytes(request).asByteArray())
+        .map(bytes -> mapper.readValue(bytes, SwaggerUiRelease.class))
+        .toOptional();
+  }
+
+  private void writeRelease(String bucket, SwaggerUiRelease release) {
+    var content = attempt(() -> mapper.writeValueAsBytes(release)).orElseThrow();
+    writeToS3(bucket, RELEASE_MARKER, content);
+  }
+
+  /** Returns the latest release, unless it is the one already installed in every bucket. */
+  private Optional<Pair<GithubApiResponse, SwaggerUiRelease>> fetchNewRelease(
+      Optional<SwaggerUiRelease> installed) {
+    var request = HttpRequest.newBuilder().uri(buildUri()).GET();
+    installed.map(SwaggerUiRelease::etag).ifPresent(etag -> request.header("If-None-Match", etag));
+    var response =
+        attempt(() -> httpClient.send(request.build(), BodyHandlers.ofString())).orElseThrow();
+    if (response.statusCode() == NOT_MODIFIED) {
+      LOGGER.info("No new swagger-ui release since {}", installed.map(SwaggerUiRelease::tag));
+      return Optional.empty();
+    }
+    if (response.statusCode() != OK) {
+      throw new IllegalStateException(
+          "Could not fetch the latest swagger-ui release, GitHub answered with status "
+              + response.statusCode());
+    }
+    var latest =
+        attempt(() -> mapper.readValue(response.body(), GithubApiResponse.class)).orElseThrow();
+    var release =
+        new SwaggerUiRelease(latest.tagName, response.headers().firstValue("ETag").orElse(null));
+    if (installed.map(SwaggerUiRelease::tag).filter(tag -> tag.equals(release.tag())).isPresent()) {
+      LOGGER.info("swagger-ui {} is already installed", release.tag());
+      return Optional.empty();
+    }
+    return Optional.of(Pair.of(latest, release));
+  }
+
+  private List<CompletableFuture<Void>> downloadAndUpload(
+      URI downloadUri, Map<String, Map<String, String>> publishedHashes) {
+    var downloadRequest = HttpRequest.newBuilder().uri(downloadUri).GET().build();
+    return httpClient
         .sendAsync(downloadRequest, BodyHandlers.ofInputStream())
         .thenApply(HttpResponse::body)
         .thenApply(ZipInputStream::new)
-        .thenAccept(this::writeZipFileToBuckets)
+        .thenApply(zipStream -> uploadDistFiles(zipStream, publishedHashes))
         .join();
-
-    writeToS3(
-        EXTERNAL_BUCKET_NAME, SWAGGER_INITIALIZER_JS, Utils.readResource(SWAGGER_INITIALIZER_JS));
-    writeToS3(
-        INTERNAL_BUCKET_NAME, SWAGGER_INITIALIZER_JS, Utils.readResource(SWAGGER_INITIALIZER_JS));
   }
 
-  private void writeZipFileToBuckets(ZipInputStream zipStream) {
-    var buckets = List.of(EXTERNAL_BUCKET_NAME, INTERNAL_BUCKET_NAME);
-    writeZipFilesToS3(buckets, zipStream);
-  }
-
-  private void writeZipFilesToS3(List<String> buckets, ZipInputStream zipStream) {
-    try {
+  private List<CompletableFuture<Void>> uploadDistFiles(
+      ZipInputStream zipStream, Map<String, Map<String, String>> publishedHashes) {
+    var uploads = new ArrayList<CompletableFuture<Void>>();
+    try (zipStream) {
       for (var zip = zipStream.getNextEntry(); nonNull(zip); zip = zipStream.getNextEntry()) {
-
-        var filePath = zip.getName();
-        if (filePath.contains("/dist/")
-            && !zip.isDirectory()
-            && !filePath.endsWith(SWAGGER_INITIALIZER_JS)) {
-          LOGGER.info("Copying file {}", filePath);
-
-          var content = readFromZipInputStream(zipStream);
+        if (isDistFile(zip)) {
+          var filePath = zip.getName();
           var fileName = filePath.substring(filePath.lastIndexOf('/') + 1);
-          buckets.forEach(b -> writeToS3(b, fileName, content));
+          uploads.addAll(uploadIfChanged(publishedHashes, fileName, zipStream.readAllBytes()));
         }
       }
-
-      zipStream.close();
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
+    return uploads;
+  }
+
+  private static boolean isDistFile(ZipEntry zip) {
+    return zip.getName().contains("/dist/")
+        && !zip.isDirectory()
+        && !zip.getName().endsWith(SWAGGER_INITIALIZER_JS);
+  }
+
+  private List<CompletableFuture<Void>> uploadIfChanged(
+      Map<String, Map<String, String>> publishedHashes, String fileName, byte[] content) {
+    var md5 = HexFormat.of().formatHex(newMd5().digest(content));
+    return publishedHashes.entrySet().stream()
+        .filter(bucket -> !md5.equals(bucket.getValue().get(fileName)))
+        .map(
+            bucket ->
+                CompletableFuture.runAsync(
+                    () -> writeToS3(bucket.getKey(), fileName, content), VIRTUAL_THREADS))
+        .toList();
   }
 
-  private static String readFromZipInputStream(ZipInputStream zis) throws IOException {
-    var outputStream = new ByteArrayOutputStream();
-    zis.transferTo(outputStream);
-    return outputStream.toString(StandardCharsets.UTF_8);
+  /**
+   * The MD5 of every file in the root of the bucket, taken from its ETag. That holds for objects
+   * uploaded with a single PutObject, which is how every swagger-ui asset is written.
+   */
+  private Map<String, String> listPublishedHashes(String bucket) {
+    var request = ListObjectsV2Request.builder().bucket(bucket).delimiter("/").build();
+    return s3Client.listObjectsV2Paginator(request).contents().stream()
+        .filter(s3Object -> nonNull(s3Object.eTag()))
+        .collect(Collectors.toMap(S3Object::key, s3Object -> s3Object.eTag().replace("\"", "")));
   }
 
-  private URI fetchDownloadUri() {
-    return attempt(
-            () -> {
-              var listRequest = HttpRequest.newBuilder().uri(buildUri()).GET().build();
-              var response = httpClient.send(listRequest, BodyHandlers.ofString()).body();
-              var githubResponse = mapper.readValue(response, GithubApiResponse.class);
-              return URI.create(githubResponse.zipUrl);
-            })
-        .orElseThrow();
+  private static MessageDigest newMd5() {
+    return attempt(() -> MessageDigest.getInstance("MD5")).orElseThrow();
   }
 
   private URI buildUri() {
@@ -1,33 +1,45 @@
 package no.sikt.generator.handlers;
 
+import static java.util.Objects.isNull;
+import static java.util.Objects.nonNull;
+import static no.sikt.generator.ApplicationConstants.API_FETCH_CONCURRENCY;
+import static no.sikt.generator.ApplicationConstants.EXPORT_FORMAT;
 import static no.sikt.generator.ApplicationConstants.EXPORT_STAGE_PROD;
 import static no.sikt.generator.ApplicationConstants.VERSION_NAME;
+import static no.sikt.generator.ParallelMapper.VIRTUAL_THREADS;
 
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestStreamHandler;
-import io.swagger.v3.parser.OpenAPIV3Parser;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.time.Duration;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import no.sikt.generator.ApiData;
 import no.sikt.generator.ApiGatewayAsyncClientSupplier;
 import no.sikt.generator.ApiGatewayHighLevelClient;
+import no.sikt.generator.AwsClientRegistry;
+import no.sikt.generator.ParallelMapper;
+import no.sikt.generator.handlers.PublishOutcome.Action;
 import nva.commons.core.JacocoGenerated;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import software.amazon.awssdk.services.apigateway.ApiGatewayAsyncClient;
-import software.amazon.awssdk.services.apigateway.model.GetRestApisResponse;
+import software.amazon.awssdk.services.apigateway.model.GetDocumentationVersionsResponse;
 import software.amazon.awssdk.services.apigateway.model.RestApi;
 
 public class PublishDocumentationsHandler implements RequestStreamHandler {
   private static final Logger LOGGER = LoggerFactory.getLogger(PublishDocumentationsHandler.class);
   private final ApiGatewayHighLevelClient apiGatewayHighLevelClient;
-  private final OpenAPIV3Parser openApiParser = new OpenAPIV3Parser();
+  private final ParallelMapper parallelMapper = new ParallelMapper(API_FETCH_CONCURRENCY);
 
   @JacocoGenerated
   public PublishDocumentationsHandler() {
@@ -41,52 +53,126 @@ public class PublishDocumentationsHandler implements RequestStreamHandler {
 
   @Override
   public void handleRequest(InputStream input, OutputStream output, Context context) {
-    var apis = apiGatewayHighLevelClient.getRestApis();
-    LOGGER.info(apis.toString());
+    apiGatewayHighLevelClient.resetStatistics();
+    var start = System.nanoTime();
+    var outcomes = publishDocumentations(apiGatewayHighLevelClient.streamRestApis());
+    logOutcomes(outcomes, Duration.ofNanos(System.nanoTime() - start));
+    AwsClientRegistry.getInstance().logStatistics();
+    apiGatewayHighLevelClient.logStatistics();
 
-    publishDocumentations(apis);
+    var failed = outcomes.stream().filter(PublishOutcome::isFailed).toList();
+    if (!failed.isEmpty()) {
+      throw new IllegalStateException("Failed to publish documentation for " + failed);
+    }
   }
 
-  private void publishDocumentations(GetRestApisResponse apis) {
-    apis.items().stream()
-        .map(this::fetchProdApiData)
-        .filter(Objects::nonNull)
-        .sorted(ApiData::sortByDate)
-        .sorted(ApiData::sortByDashes)
-        .filter(this::apiShouldBeIncluded)
-        .filter(distinctByKey(ApiData::getName))
-        .forEach(this::publishDocumentation);
+  private List<PublishOutcome> publishDocumentations(Stream<RestApi> apis) {
+    var apisToPublish =
+        parallelMapper.map(apis, this::fetchProdApiData).stream()
+            .sorted(ApiData::sortByDate)
+            .sorted(ApiData::sortByDashes)
+            .filter(this::apiShouldBeIncluded)
+            .filter(distinctByKey(ApiData::getName))
+            .toList();
+    return parallelMapper.map(apisToPublish, apiData -> publishDocumentation(apiData).join());
   }
 
   private ApiData fetchProdApiData(RestApi restApi) {
     return apiGatewayHighLevelClient.fetchApiDataForStage(
-        restApi, EXPORT_STAGE_PROD, openApiParser);
+        restApi, EXPORT_STAGE_PROD, EXPORT_FORMAT);
   }
 
-  private void publishDocumentation(ApiData apiData) {
+  private CompletableFuture<PublishOutcome> publishDocumentation(ApiData apiData) {
+    var start = System.nanoTime();
     var name = apiData.getOpenapi().getInfo().getTitle();
     var apiId = apiData.getAwsRestApi().id();
     LOGGER.info("publishing {}", name);
 
-    var existingVersions = apiGatewayHighLevelClient.fetchVersions(apiId);
-    var partsHash = apiGatewayHighLevelClient.fetchDocumentationPartsHash(apiId);
-    var wantedDocVersion = VERSION_NAME + "-" + partsHash;
-    var docVersionExists =
-        existingVersions.items().stream().anyMatch(item -> wantedDocVersion.equals(item.version()));
-    LOGGER.info("{} has parts-hash {}", name, partsHash);
+    var fingerprint =
+        supplyAsync(
+            () ->
+                apiGatewayHighLevelClient.fetchDocumentationFingerprint(
+                    apiId, apiData.getDeploymentId()));
+    // When the current version is not ours the stage must be moved, so the version list is
+    // needed; fetch it alongside the fingerprint.
+    var versions =
+        isPublishedByUs(apiData.getCurrentDocVersion())
+            ? null
+            : supplyAsync(() -> apiGatewayHighLevelClient.fetchVersions(apiId));
+
+    return fingerprint
+        .thenCompose(hash -> publishVersion(apiData, VERSION_NAME + "-" + hash, versions))
+        .handle((action, failure) -> toOutcome(apiData, action, failure, start));
+  }
+
+  private CompletableFuture<Action> publishVersion(
+      ApiData apiData,
+      String wantedDocVersion,
+      CompletableFuture<GetDocumentationVersionsResponse> prefetchedVersions) {
+    var name = apiData.getName();
+    var apiId = apiData.getAwsRestApi().id();
+    LOGGER.info("{} wants documentation version {}", name, wantedDocVersion);
 
-    if (docVersionExists && apiData.getCurrentDocVersion().equals(wantedDocVersion)) {
+    if (wantedDocVersion.equals(apiData.getCurrentDocVersion())) {
       LOGGER.info("{} has existing documentation and its set - ignoring", name);
-    } else if (docVersionExists) {
-      LOGGER.info(
-          "{} has existing documentation but its currently associated with {} - patching",
-          name,
-          apiData.getCurrentDocVersion());
-      apiGatewayHighLevelClient.setStageDocVersion(apiId, EXPORT_STAGE_PROD, wantedDocVersion);
-    } else {
-      LOGGER.info("{} has no existing documentation - creating", name);
-      apiGatewayHighLevelClient.createDocumentation(apiId, wantedDocVersion, EXPORT_STAGE_PROD);
+      return CompletableFuture.completedFuture(Action.UNCHANGED);
     }
+
+    var versions =
+        isNull(prefetchedVersions)
+            ? supplyAsync(() -> apiGatewayHighLevelClient.fetchVersions(apiId))
+            : prefetchedVersions;
+    return versions.thenApplyAsync(
+        existingVersions -> {
+          var docVersionExists =
+              existingVersions.items().stream()
+                  .anyMatch(item -> wantedDocVersion.equals(item.version()));
+          if (docVersionExists) {
+            LOGGER.info(
+                "{} has existing documentation but its currently associated with {} - patching",
+                name,
+                apiData.getCurrentDocVersion());
+            apiGatewayHighLevelClient.setStageDocVersion(
+                apiId, EXPORT_STAGE_PROD, wantedDocVersion);
+            return Action.PATCHED;
+          }
+          LOGGER.info("{} has no existing documentation - creating", name);
+          apiGatewayHighLevelClient.createDocumentation(
+              apiId, wantedDocVersion, EXPORT_STAGE_PROD);
+          return Action.CREATED;
+        },
+        VIRTUAL_THREADS);
+  }
+
+  private static boolean isPublishedByUs(String docVersion) {
+    return nonNull(docVersion) && docVersion.startsWith(VERSION_NAME + "-");
+  }
+
+  private static <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier) {
+    return CompletableFuture.supplyAsync(supplier, VIRTUAL_THREADS);
+  }
+
+  private static PublishOutcome toOutcome(
+      ApiData apiData, Action action, Throwable failure, long start) {
+    var duration = Duration.ofNanos(System.nanoTime() - start);
+    if (nonNull(failure)) {
+      LOGGER.error("Failed to publish documentation for {}", apiData.getName(), failure);
+      return new PublishOutcome(
+          apiData.getName(), apiData.getAwsRestApi().id(), Action.FAILED, duration);
+    }
+    return new PublishOutcome(apiData.getName(), apiData.getAwsRestApi().id(), action, duration);
+  }
+
+  private static void logOutcomes(List<PublishOutcome> outcomes, Duration elapsed) {
+    outcomes.forEach(outcome -> LOGGER.info("{}", outcome));
+    var counts =
+        outcomes.stream()
+            .collect(Collectors.groupingBy(PublishOutcome::action, Collectors.counting()));
+    LOGGER.info(
+        "Published documentation for {} APIs in {} ms: {}",
+        outcomes.size(),
+        elapsed.toMillis(),
+        counts);
   }
 
   public static <T> Predicate<T> distinctByKey(Function<? super T, Object> keyExtractor) {
@@ -0,0 +1,23 @@
+package no.sikt.generator.handlers;
+
+import java.time.Duration;
+
+/** What publishing documentation did for a single API, and how long it took. */
+public record PublishOutcome(String apiName, String apiId, Action action, Duration duration) {
+
+  public enum Action {
+    UNCHANGED,
+    PATCHED,
+    CREATED,
+    FAILED
+  }
+
+  public boolean isFailed() {
+    return action == Action.FAILED;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%s (%s): %s in %d ms", apiName, apiId, action, duration.toMillis());
+  }
+}
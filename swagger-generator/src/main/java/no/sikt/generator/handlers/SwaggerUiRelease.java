@@ -0,0 +1,7 @@
+package no.sikt.generator.handlers;
+
+/**
+ * The swagger-ui release installed in a bucket, and the ETag GitHub returned for it, which lets the
+ * next run ask for the latest release conditionally.
+ */
+public record SwaggerUiRelease(String tag, String etag) {}
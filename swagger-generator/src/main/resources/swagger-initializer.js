@@ -1,20 +1,36 @@
 window.onload = function() {
   //<editor-fold desc="Changeable Configuration Block">
 
-  // the following lines will be replaced by docker/configurator, when it runs in a docker-container
-  window.ui = SwaggerUIBundle({
-    url: './docs/openapi.yaml',
-    dom_id: '#swagger-ui',
-    deepLinking: true,
-    presets: [
-      SwaggerUIBundle.presets.apis,
-      SwaggerUIStandalonePreset
-    ],
-    plugins: [
-      SwaggerUIBundle.plugins.DownloadUrl
-    ],
-    layout: "StandaloneLayout"
-  });
+  // the current spec is published under a content-hashed name listed in the manifest
+  fetch('./docs/openapi.manifest.json', { cache: 'no-cache' })
+    .then(response => {
+      if (!response.ok) {
+        throw new Error('Could not load the API manifest: HTTP ' + response.status);
+      }
+      return response.json();
+    })
+    .then(manifest => {
+      // the following lines will be replaced by docker/configurator, when it runs in a docker-container
+      window.ui = SwaggerUIBundle({
+        url: './' + manifest.json + '.gz',
+        dom_id: '#swagger-ui',
+        deepLinking: true,
+        presets: [
+          SwaggerUIBundle.presets.apis,
+          SwaggerUIStandalonePreset
+        ],
+        plugins: [
+          SwaggerUIBundle.plugins.DownloadUrl
+        ],
+        layout: "StandaloneLayout"
+      });
+    })
+    .catch(error => {
+      // without the manifest there is no spec to render, so say so instead of leaving the page blank
+      const message = document.createElement('p');
+      message.textContent = error.message + '. Please reload the page or try again later.';
+      document.getElementById('swagger-ui').replaceChildren(message);
+    });
 
   //</editor-fold>
 };
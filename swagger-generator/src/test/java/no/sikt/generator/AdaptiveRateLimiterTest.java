@@ -0,0 +1,68 @@
+package no.sikt.generator;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import org.junit.jupiter.api.Test;
+
+class AdaptiveRateLimiterTest {
+
+  @Test
+  void shouldHalveConcurrencyLimitWhenThrottled() {
+    var limiter = new AdaptiveRateLimiter("getExport", 1000, 100, 8, 16);
+
+    limiter.onThrottle();
+    assertThat(limiter.getConcurrencyLimit(), is(equalTo(4)));
+    limiter.onThrottle();
+    limiter.onThrottle();
+    limiter.onThrottle();
+
+    assertThat(limiter.getConcurrencyLimit(), is(equalTo(1)));
+    assertThat(limiter.getThrottleCount(), is(equalTo(4L)));
+  }
+
+  @Test
+  void shouldIncreaseConcurrencyLimitByOneAfterWindowOfSuccesses() throws InterruptedException {
+    var limiter = new AdaptiveRateLimiter("getStages", 1000, 100, 2, 3);
+
+    for (var i = 0; i < 10; i++) {
+      limiter.acquire();
+      limiter.onSuccess();
+      limiter.release();
+    }
+
+    assertThat(limiter.getConcurrencyLimit(), is(equalTo(3)));
+    assertThat(limiter.getAcquisitions(), is(equalTo(10L)));
+  }
+
+  @Test
+  void shouldWaitForTokensWhenBurstIsUsedUp() throws InterruptedException {
+    var limiter = new AdaptiveRateLimiter("getRestApis", 20, 1, 4, 4);
+
+    limiter.acquire();
+    limiter.release();
+    limiter.acquire();
+    limiter.release();
+
+    assertThat(limiter.getQueueWaitMillis() >= 10, is(true));
+    assertThat(limiter.toString(), containsString("getRestApis: 2 calls, 0 throttled"));
+    assertThat(limiter.getName(), is(equalTo("getRestApis")));
+  }
+
+  @Test
+  void shouldKeepConcurrencyLimitWhenStatisticsAreReset() throws InterruptedException {
+    var limiter = new AdaptiveRateLimiter("getExport", 1000, 100, 8, 16);
+    limiter.acquire();
+    limiter.release();
+    limiter.onThrottle();
+
+    limiter.resetStatistics();
+
+    assertThat(limiter.getAcquisitions(), is(equalTo(0L)));
+    assertThat(limiter.getThrottleCount(), is(equalTo(0L)));
+    assertThat(limiter.getQueueWaitMillis(), is(equalTo(0L)));
+    assertThat(limiter.getConcurrencyLimit(), is(equalTo(4)));
+  }
+}
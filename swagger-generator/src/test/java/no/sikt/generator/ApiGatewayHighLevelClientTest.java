@@ -0,0 +1,174 @@
+package no.sikt.generator;
+
+import static java.util.Objects.isNull;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.apigateway.ApiGatewayAsyncClient;
+import software.amazon.awssdk.services.apigateway.model.BadRequestException;
+import software.amazon.awssdk.services.apigateway.model.DocumentationPart;
+import software.amazon.awssdk.services.apigateway.model.DocumentationPartLocation;
+import software.amazon.awssdk.services.apigateway.model.DocumentationPartType;
+import software.amazon.awssdk.services.apigateway.model.GetDocumentationPartsRequest;
+import software.amazon.awssdk.services.apigateway.model.GetDocumentationPartsResponse;
+import software.amazon.awssdk.services.apigateway.model.GetRestApisRequest;
+import software.amazon.awssdk.services.apigateway.model.GetRestApisResponse;
+import software.amazon.awssdk.services.apigateway.model.GetStageRequest;
+import software.amazon.awssdk.services.apigateway.model.GetStageResponse;
+import software.amazon.awssdk.services.apigateway.model.NotFoundException;
+import software.amazon.awssdk.services.apigateway.model.RestApi;
+import software.amazon.awssdk.services.apigateway.model.TooManyRequestsException;
+
+class ApiGatewayHighLevelClientTest {
+
+  private ApiGatewayAsyncClient apiGatewayAsyncClient;
+  private ApiGatewayHighLevelClient client;
+
+  @BeforeEach
+  void setup() {
+    apiGatewayAsyncClient = mock(ApiGatewayAsyncClient.class);
+    client = new ApiGatewayHighLevelClient(() -> apiGatewayAsyncClient);
+  }
+
+  @Test
+  void shouldFollowPositionTokenWhenStreamingRestApis() {
+    when(apiGatewayAsyncClient.getRestApis(any(GetRestApisRequest.class)))
+        .thenAnswer(
+            invocation -> {
+              var position = invocation.getArgument(0, GetRestApisRequest.class).position();
+              var response =
+                  isNull(position) ? page("next", "API A", "API B") : page(null, "API C");
+              return CompletableFuture.completedFuture(response);
+            });
+
+    var names = client.streamRestApis().map(RestApi::name).toList();
+
+    assertThat(names, contains("API A", "API B", "API C"));
+  }
+
+  @Test
+  void shouldBackOffAndRetryWhenThrottled() {
+    var stage = GetStageResponse.builder().stageName("Prod").deploymentId("d1").build();
+    when(apiGatewayAsyncClient.getStage(any(GetStageRequest.class)))
+        .thenReturn(
+            CompletableFuture.failedFuture(
+                TooManyRequestsException.builder().message("Too Many Requests").build()))
+        .thenReturn(CompletableFuture.completedFuture(stage));
+
+    var result = client.fetchStage("id", "Prod");
+    client.logStatistics();
+
+    assertThat(result.orElseThrow().deploymentId(), is(equalTo("d1")));
+    var limiter = client.getRateLimiters().getFirst();
+    assertThat(limiter.getThrottleCount(), is(equalTo(1L)));
+    assertThat(limiter.getAcquisitions(), is(equalTo(2L)));
+  }
+
+  @Test
+  void shouldReturnEmptyWhenStageDoesNotExist() {
+    when(apiGatewayAsyncClient.getStage(any(GetStageRequest.class)))
+        .thenReturn(
+            CompletableFuture.failedFuture(NotFoundException.builder().message("nope").build()));
+
+    assertThat(client.fetchStage("id", "Prod").isEmpty(), is(true));
+    verify(apiGatewayAsyncClient, times(1)).getStage(any(GetStageRequest.class));
+  }
+
+  @Test
+  void shouldFailWithoutRetryWhenCallFailsForOtherReasons() {
+    when(apiGatewayAsyncClient.getStage(any(GetStageRequest.class)))
+        .thenReturn(
+            CompletableFuture.failedFuture(
+                BadRequestException.builder().message("Invalid stage").build()));
+
+    assertThrows(RuntimeException.class, () -> client.fetchStage("id", "Prod"));
+    verify(apiGatewayAsyncClient, times(1)).getStage(any(GetStageRequest.class));
+  }
+
+  @Test
+  void shouldFingerprintEveryPageOfDocumentationPartsIndependentOfOrder() {
+    when(apiGatewayAsyncClient.getDocumentationParts(any(GetDocumentationPartsRequest.class)))
+        .thenAnswer(
+            invocation -> {
+              var position =
+                  invocation.getArgument(0, GetDocumentationPartsRequest.class).position();
+              var response =
+                  isNull(position)
+                      ? partsPage("next", part("1", "/a", "{}"), part("2", "/b", "{}"))
+                      : partsPage(null, part("3", "/c", "{\"x\":1}"));
+              return CompletableFuture.completedFuture(response);
+            });
+    var reordered = mock(ApiGatewayAsyncClient.class);
+    when(reordered.getDocumentationParts(any(GetDocumentationPartsRequest.class)))
+        .thenReturn(
+            CompletableFuture.completedFuture(
+                partsPage(
+                    null,
+                    part("9", "/c", "{\"x\":1}"),
+                    part("8", "/a", "{}"),
+                    part("7", "/b", "{}"))));
+
+    var fingerprint = client.fetchDocumentationFingerprint("id", "deployment");
+    var memoized = client.fetchDocumentationFingerprint("id", "deployment");
+    var fromReordered =
+        new ApiGatewayHighLevelClient(() -> reordered).fetchDocumentationFingerprint("id", null);
+
+    assertThat(memoized, is(equalTo(fingerprint)));
+    assertThat(fromReordered, is(equalTo(fingerprint)));
+    verify(apiGatewayAsyncClient, times(2))
+        .getDocumentationParts(any(GetDocumentationPartsRequest.class));
+  }
+
+  @Test
+  void shouldMemoizeFingerprintOfLatestDeploymentOnly() {
+    when(apiGatewayAsyncClient.getDocumentationParts(any(GetDocumentationPartsRequest.class)))
+        .thenReturn(CompletableFuture.completedFuture(partsPage(null, part("1", "/a", "{}"))));
+
+    client.fetchDocumentationFingerprint("id", "first");
+    client.fetchDocumentationFingerprint("id", "second");
+    client.fetchDocumentationFingerprint("id", "second");
+    client.fetchDocumentationFingerprint("id", "first");
+
+    verify(apiGatewayAsyncClient, times(3))
+        .getDocumentationParts(any(GetDocumentationPartsRequest.class));
+  }
+
+  @Test
+  void shouldChangeFingerprintWhenPartPropertiesChange() {
+    var before = DocumentationFingerprint.of(Stream.of(part("1", "/a", "{\"description\":1}")));
+    var after = DocumentationFingerprint.of(Stream.of(part("1", "/a", "{\"description\":2}")));
+
+    assertThat(before, is(not(equalTo(after))));
+  }
+
+  private static DocumentationPart part(String id, String path, String properties) {
+    var location =
+        DocumentationPartLocation.builder().type(DocumentationPartType.RESOURCE).path(path).build();
+    return DocumentationPart.builder().id(id).location(location).properties(properties).build();
+  }
+
+  private static GetDocumentationPartsResponse partsPage(
+      String position, DocumentationPart... parts) {
+    return GetDocumentationPartsResponse.builder().items(parts).position(position).build();
+  }
+
+  private static GetRestApisResponse page(String position, String... names) {
+    var items =
+        Arrays.stream(names).map(name -> RestApi.builder().name(name).build()).toList();
+    return GetRestApisResponse.builder().items(items).position(position).build();
+  }
+}
@@ -0,0 +1,61 @@
+package no.sikt.generator;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.cloudfront.CloudFrontClient;
+import software.amazon.awssdk.services.s3.S3Client;
+
+class AwsClientRegistryTest {
+
+  @SuppressWarnings({"unchecked", "PMD.CloseResource"})
+  @Test
+  void shouldBuildClientOnceAndReuseItAcrossCalls() {
+    var registry = new AwsClientRegistry();
+    var client = mock(S3Client.class);
+    Supplier<S3Client> factory = mock(Supplier.class);
+    when(factory.get()).thenReturn(client);
+
+    var supplier = registry.shared(S3Client.class, factory);
+
+    assertThat(supplier.get(), is(sameInstance(client)));
+    assertThat(supplier.get(), is(sameInstance(client)));
+    assertThat(supplier.get(), is(sameInstance(client)));
+    verify(factory, times(1)).get();
+    assertThat(registry.getOpenedCount(), is(equalTo(1L)));
+    assertThat(registry.getReusedCount(), is(equalTo(2L)));
+  }
+
+  @SuppressWarnings("PMD.CloseResource")
+  @Test
+  void shouldCloseAllClientsAndBuildNewOnesAfterwards() {
+    var registry = new AwsClientRegistry();
+    var s3Client = mock(S3Client.class);
+    var cloudFrontClient = mock(CloudFrontClient.class);
+    doThrow(new IllegalStateException("already closed")).when(cloudFrontClient).close();
+
+    registry.get(S3Client.class, () -> s3Client);
+    registry.get(CloudFrontClient.class, () -> cloudFrontClient);
+    registry.logStatistics();
+    registry.closeAll();
+
+    verify(s3Client).close();
+    verify(cloudFrontClient).close();
+    registry.get(S3Client.class, () -> s3Client);
+    assertThat(registry.getOpenedCount(), is(equalTo(3L)));
+  }
+
+  @Test
+  void shouldProvideContainerScopedInstance() {
+    assertThat(AwsClientRegistry.getInstance(), is(sameInstance(AwsClientRegistry.getInstance())));
+  }
+}
@@ -0,0 +1,206 @@
+package no.sikt.generator;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static no.sikt.generator.ChangeDetectingWriter.CONTENT_HASH_METADATA;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import io.swagger.v3.core.util.Json;
+import io.swagger.v3.core.util.Yaml;
+import io.swagger.v3.oas.models.OpenAPI;
+import io.swagger.v3.oas.models.info.Info;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import no.unit.nva.s3.S3Driver;
+import no.unit.nva.stubs.FakeS3Client;
+import nva.commons.core.paths.UnixPath;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectRequest;
+import software.amazon.awssdk.services.s3.model.HeadObjectResponse;
+import software.amazon.awssdk.services.s3.model.NoSuchKeyException;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+
+class ChangeDetectingWriterTest {
+
+  private static final String BUCKET = "docs";
+  private static final String KEY = "docs/openapi.yaml";
+  private static final String GZIP_KEY = "docs/openapi.yaml.gz";
+  private static final String JSON_KEY = "docs/openapi.json";
+  private static final String CACHE_CONTROL = "public, max-age=300";
+  private static final List<ContentEncoding> PLAIN = List.of(ContentEncoding.IDENTITY);
+  private static final List<ContentEncoding> PLAIN_AND_GZIP =
+      List.of(ContentEncoding.IDENTITY, ContentEncoding.GZIP);
+
+  @Test
+  void shouldWriteContentAndSkipIdenticalContentAfterwards() {
+    var s3Client = new FakeS3Client();
+    var writer = new ChangeDetectingWriter(s3Client, CACHE_CONTROL);
+
+    assertThat(writer.write(BUCKET, KEY, "first", PLAIN), contains(KEY));
+    assertThat(writer.write(BUCKET, KEY, "first", PLAIN), is(empty()));
+    assertThat(writer.write(BUCKET, KEY, "second", PLAIN), contains(KEY));
+
+    assertThat(new S3Driver(s3Client, BUCKET).getFile(UnixPath.of(KEY)), is(equalTo("second")));
+    assertThat(writer.getWritten(), is(equalTo(2L)));
+    assertThat(writer.getSkipped(), is(equalTo(1L)));
+  }
+
+  @Test
+  void shouldSkipWriteWhenStoredHashMatchesContent() {
+    var s3Client = mock(S3Client.class);
+    var writer = new ChangeDetectingWriter(s3Client, CACHE_CONTROL);
+    writer.write(BUCKET, "other.yaml", "content", PLAIN);
+    var hash = storedRequest(s3Client).metadata().get(CONTENT_HASH_METADATA);
+    var headResponse =
+        HeadObjectResponse.builder().metadata(Map.of(CONTENT_HASH_METADATA, hash)).build();
+    when(s3Client.headObject(any(HeadObjectRequest.class))).thenReturn(headResponse);
+
+    var coldStartWriter = new ChangeDetectingWriter(s3Client, CACHE_CONTROL);
+    var written = coldStartWriter.write(BUCKET, KEY, "content", PLAIN);
+    coldStartWriter.logStatistics();
+
+    assertThat(written, is(empty()));
+    assertThat(coldStartWriter.getSkipped(), is(equalTo(1L)));
+  }
+
+  @Test
+  void shouldWriteWhenStoredObjectCanNotBeCompared() {
+    var s3Client = mock(S3Client.class);
+    when(s3Client.headObject(any(HeadObjectRequest.class)))
+        .thenThrow(NoSuchKeyException.builder().build());
+
+    var written = new ChangeDetectingWriter(s3Client, CACHE_CONTROL).write(BUCKET, KEY, "x", PLAIN);
+
+    assertThat(written, contains(KEY));
+    verify(s3Client).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+  }
+
+  @Test
+  void shouldStreamModelAsYamlAndSkipIdenticalModelAfterwards() {
+    var s3Client = new FakeS3Client();
+    var writer = new ChangeDetectingWriter(s3Client, CACHE_CONTROL);
+    var openApi = new OpenAPI().info(new Info().title("Combined").version("1.0"));
+
+    assertThat(writeYaml(writer, openApi, PLAIN), contains(KEY));
+    assertThat(writeYaml(writer, openApi, PLAIN), is(empty()));
+
+    var yaml = new S3Driver(s3Client, BUCKET).getFile(UnixPath.of(KEY));
+    assertThat(yaml, is(equalTo(Yaml.pretty(openApi))));
+  }
+
+  @Test
+  void shouldStreamModelAsCompactJson() throws IOException {
+    var s3Client = mock(S3Client.class);
+    var writer = new ChangeDetectingWriter(s3Client, CACHE_CONTROL);
+    var openApi = new OpenAPI().info(new Info().title("Combined").version("1.0"));
+
+    var hash = writer.hash(openApi, ExportFormat.JSON);
+    writer.writeModel(BUCKET, JSON_KEY, openApi, ExportFormat.JSON, hash, PLAIN);
+
+    var bodyCaptor = ArgumentCaptor.forClass(RequestBody.class);
+    verify(s3Client).putObject(any(PutObjectRequest.class), bodyCaptor.capture());
+    try (var body = bodyCaptor.getValue().contentStreamProvider().newStream()) {
+      var json = new String(body.readAllBytes(), UTF_8);
+      assertThat(json, is(equalTo(Json.mapper().writeValueAsString(openApi))));
+    }
+    assertThat(storedRequest(s3Client).contentType(), is(equalTo("application/json")));
+  }
+
+  @Test
+  void shouldAbortUploadsAndPublishNothingWhenSerializationFails() {
+    var s3Client = mock(S3Client.class);
+    var writer = new ChangeDetectingWriter(s3Client, CACHE_CONTROL);
+    var openApi = new OpenAPI().info(new Info().title("Combined").version("1.0"));
+    openApi.addExtension("x-failing", new FailingValue());
+
+    assertThrows(
+        RuntimeException.class,
+        () -> writer.writeModel(BUCKET, KEY, openApi, ExportFormat.YAML, "hash", PLAIN_AND_GZIP));
+
+    verify(s3Client, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+    assertThat(writer.getWritten(), is(equalTo(0L)));
+    assertThat(writer.write(BUCKET, KEY, "openapi: 3.0.1", PLAIN), contains(KEY));
+  }
+
+  @Test
+  void shouldWriteGzipEncodedVariantNextToPlainContent() throws IOException {
+    var s3Client = new FakeS3Client();
+    var writer = new ChangeDetectingWriter(s3Client, CACHE_CONTROL);
+
+    var written = writer.write(BUCKET, KEY, "openapi: 3.0.1", PLAIN_AND_GZIP);
+
+    assertThat(written, containsInAnyOrder(KEY, GZIP_KEY));
+    assertThat(readGzip(s3Client, GZIP_KEY), is(equalTo("openapi: 3.0.1")));
+    assertThat(writer.write(BUCKET, KEY, "openapi: 3.0.1", PLAIN_AND_GZIP), is(empty()));
+  }
+
+  @Test
+  void shouldStreamGzipEncodedModel() throws IOException {
+    var s3Client = new FakeS3Client();
+    var writer = new ChangeDetectingWriter(s3Client, CACHE_CONTROL);
+    var openApi = new OpenAPI().info(new Info().title("Combined").version("1.0"));
+
+    var written = writeYaml(writer, openApi, PLAIN_AND_GZIP);
+
+    assertThat(written, containsInAnyOrder(KEY, GZIP_KEY));
+    assertThat(readGzip(s3Client, GZIP_KEY), is(equalTo(Yaml.pretty(openApi))));
+  }
+
+  @Test
+  void shouldSetContentHeadersOnEncodedVariant() {
+    var s3Client = mock(S3Client.class);
+    var writer = new ChangeDetectingWriter(s3Client, CACHE_CONTROL);
+
+    writer.write(BUCKET, KEY, "openapi: 3.0.1", List.of(ContentEncoding.GZIP));
+
+    var request = storedRequest(s3Client);
+    assertThat(request.key(), is(equalTo(GZIP_KEY)));
+    assertThat(request.contentEncoding(), is(equalTo("gzip")));
+    assertThat(request.contentType(), is(equalTo(ExportFormat.YAML.getContentType())));
+    assertThat(request.cacheControl(), is(equalTo(CACHE_CONTROL)));
+  }
+
+  private static final class FailingValue {
+
+    public String getValue() {
+      throw new IllegalStateException("Can not serialize");
+    }
+  }
+
+  private static List<String> writeYaml(
+      ChangeDetectingWriter writer, OpenAPI openApi, List<ContentEncoding> encodings) {
+    var hash = writer.hash(openApi, ExportFormat.YAML);
+    return writer.writeModel(BUCKET, KEY, openApi, ExportFormat.YAML, hash, encodings);
+  }
+
+  private static PutObjectRequest storedRequest(S3Client s3Client) {
+    var captor = ArgumentCaptor.forClass(PutObjectRequest.class);
+    verify(s3Client).putObject(captor.capture(), any(RequestBody.class));
+    return captor.getValue();
+  }
+
+  private static String readGzip(S3Client s3Client, String key) throws IOException {
+    var request = GetObjectRequest.builder().bucket(BUCKET).key(key).build();
+    var bytes = s3Client.getObjectAsBytes(request).asByteArray();
+    try (var input = new GZIPInputStream(new ByteArrayInputStream(bytes))) {
+      return new String(input.readAllBytes(), UTF_8);
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package no.sikt.generator;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import software.amazon.awssdk.services.cloudfront.CloudFrontClient;
+import software.amazon.awssdk.services.cloudfront.model.CreateInvalidationRequest;
+
+class CloudFrontHighLevelClientTest {
+
+  private static final String DISTRIBUTION = "distribution";
+  private CloudFrontClient cloudFrontClient;
+  private CloudFrontHighLevelClient client;
+
+  @BeforeEach
+  void setup() {
+    cloudFrontClient = mock(CloudFrontClient.class);
+    client = new CloudFrontHighLevelClient(() -> cloudFrontClient, 2);
+  }
+
+  @Test
+  void shouldInvalidateOnlyChangedKeysInOneBatch() {
+    client.invalidateKeys(
+        DISTRIBUTION, List.of("docs/openapi.yaml", "docs/api_a.yaml", "docs/openapi.yaml"));
+
+    var request = capturedRequest();
+    assertThat(request.distributionId(), is(equalTo(DISTRIBUTION)));
+    assertThat(
+        request.invalidationBatch().paths().items(),
+        contains("/docs/api_a.yaml", "/docs/openapi.yaml"));
+    assertThat(request.invalidationBatch().paths().quantity(), is(equalTo(2)));
+  }
+
+  @Test
+  void shouldFallBackToWildcardAboveMaxPathCount() {
+    client.invalidateKeys(DISTRIBUTION, List.of("a.yaml", "b.yaml", "c.yaml"));
+
+    assertThat(
+        capturedRequest().invalidationBatch().paths().items(),
+        contains(CloudFrontHighLevelClient.ALL_FILES));
+  }
+
+  @Test
+  void shouldNotInvalidateWhenNoKeysChanged() {
+    client.invalidateKeys(DISTRIBUTION, List.of());
+
+    verify(cloudFrontClient, never()).createInvalidation(any(CreateInvalidationRequest.class));
+  }
+
+  private CreateInvalidationRequest capturedRequest() {
+    var captor = ArgumentCaptor.forClass(CreateInvalidationRequest.class);
+    verify(cloudFrontClient).createInvalidation(captor.capture());
+    return captor.getValue();
+  }
+}
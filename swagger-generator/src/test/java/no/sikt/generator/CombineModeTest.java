@@ -0,0 +1,58 @@
+package no.sikt.generator;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import org.junit.jupiter.api.Test;
+
+class CombineModeTest {
+
+  private static final List<Integer> ITEMS = List.of(5, 1, 4, 2, 3);
+
+  @Test
+  void shouldKeepOrderOfItems() {
+    for (var mode : CombineMode.values()) {
+      assertThat(mode.map(ITEMS, item -> item * 10), is(equalTo(List.of(50, 10, 40, 20, 30))));
+    }
+  }
+
+  @Test
+  void shouldApplyStepToEveryItemInParallel() {
+    var seen = new ConcurrentLinkedQueue<Integer>();
+
+    CombineMode.PARALLEL.forEach(ITEMS, seen::add);
+
+    assertThat(seen.stream().sorted().toList(), is(equalTo(List.of(1, 2, 3, 4, 5))));
+  }
+
+  @Test
+  void shouldRethrowFailureOfStepRunInParallel() {
+    assertThrows(
+        IllegalStateException.class,
+        () ->
+            CombineMode.PARALLEL.forEach(
+                ITEMS,
+                item -> {
+                  throw new IllegalStateException("Failed on " + item);
+                }));
+  }
+
+  @Test
+  void shouldReduceItemsInOrder() {
+    var items = List.of("a", "b", "c", "d", "e", "f", "g");
+    for (var mode : CombineMode.values()) {
+      assertThat(mode.reduce(items, String::concat), is(equalTo("abcdefg")));
+    }
+  }
+
+  @Test
+  void shouldRefuseToReduceNothing() {
+    assertThrows(
+        IllegalArgumentException.class,
+        () -> CombineMode.PARALLEL.reduce(List.<String>of(), String::concat));
+  }
+}
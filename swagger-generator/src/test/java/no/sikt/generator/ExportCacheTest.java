@@ -0,0 +1,52 @@
+package no.sikt.generator;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import org.junit.jupiter.api.Test;
+import software.amazon.awssdk.services.apigateway.model.Stage;
+
+class ExportCacheTest {
+
+  private static final String REST_API_ID = "abc123";
+  private static final Stage STAGE =
+      Stage.builder().stageName("Prod").deploymentId("d1").documentationVersion("v1").build();
+
+  @Test
+  void shouldFetchExportOnlyOncePerDeployment() {
+    var cache = ExportCache.inMemory();
+
+    cache.getOrFetch(REST_API_ID, STAGE, ExportFormat.JSON, () -> "first");
+    var export = cache.getOrFetch(REST_API_ID, STAGE, ExportFormat.JSON, () -> "second");
+
+    assertThat(export, is(equalTo("first")));
+    assertThat(cache.getMisses(), is(equalTo(1L)));
+    assertThat(cache.getHits(), is(equalTo(1L)));
+  }
+
+  @Test
+  void shouldCountEachRunFromZeroAfterReset() {
+    var cache = ExportCache.inMemory();
+    cache.getOrFetch(REST_API_ID, STAGE, ExportFormat.JSON, () -> "export");
+
+    cache.resetStatistics();
+    cache.getOrFetch(REST_API_ID, STAGE, ExportFormat.JSON, () -> "export");
+
+    assertThat(cache.getMisses(), is(equalTo(0L)));
+    assertThat(cache.getHits(), is(equalTo(1L)));
+  }
+
+  @Test
+  void shouldKeepOnlyLatestDeploymentOfApiInMemory() {
+    var cache = ExportCache.inMemory();
+    var redeployed = STAGE.toBuilder().deploymentId("d2").build();
+    cache.getOrFetch(REST_API_ID, STAGE, ExportFormat.JSON, () -> "first");
+    cache.getOrFetch(REST_API_ID, redeployed, ExportFormat.JSON, () -> "second");
+
+    var export = cache.getOrFetch(REST_API_ID, STAGE, ExportFormat.JSON, () -> "refetched");
+
+    assertThat(export, is(equalTo("refetched")));
+    assertThat(cache.getMisses(), is(equalTo(3L)));
+  }
+}
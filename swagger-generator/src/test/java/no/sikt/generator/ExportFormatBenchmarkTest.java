@@ -0,0 +1,59 @@
+package no.sikt.generator;
+
+import static no.sikt.generator.Utils.readResource;
+import static no.sikt.generator.handlers.TestUtils.toJson;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares parse time and allocation of JSON and YAML exports on our largest APIs. Run with {@code
+ * ./gradlew test --tests ExportFormatBenchmarkTest -Dbenchmark=true}.
+ */
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class ExportFormatBenchmarkTest {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ExportFormatBenchmarkTest.class);
+  private static final List<String> LARGEST_EXPORTS =
+      List.of(
+          "openapi_docs/nva/nva-cristin-proxy-api.yaml",
+          "openapi_docs/nva/nva-publication-api.yaml");
+  private static final int WARMUP_ITERATIONS = 20;
+  private static final int MEASURED_ITERATIONS = 100;
+
+  @Test
+  void shouldCompareParsingOfJsonAndYamlExports() {
+    for (var resource : LARGEST_EXPORTS) {
+      var yaml = readResource(resource);
+      var json = toJson(yaml);
+      measure(resource, ExportFormat.YAML, yaml);
+      measure(resource, ExportFormat.JSON, json);
+    }
+  }
+
+  private static void measure(String resource, ExportFormat format, String export) {
+    for (var i = 0; i < WARMUP_ITERATIONS; i++) {
+      format.parse(export);
+    }
+    var threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    var allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+    var start = System.nanoTime();
+    for (var i = 0; i < MEASURED_ITERATIONS; i++) {
+      format.parse(export);
+    }
+    var micros = (System.nanoTime() - start) / 1000 / MEASURED_ITERATIONS;
+    var allocated =
+        (threads.getCurrentThreadAllocatedBytes() - allocatedBefore) / MEASURED_ITERATIONS;
+    LOGGER.info(
+        "{} as {}: {} bytes, {} us and {} KiB allocated per parse",
+        resource,
+        format,
+        export.length(),
+        micros,
+        allocated / 1024);
+  }
+}
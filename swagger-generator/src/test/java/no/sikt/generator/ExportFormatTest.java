@@ -0,0 +1,40 @@
+package no.sikt.generator;
+
+import static no.sikt.generator.Utils.readResource;
+import static no.sikt.generator.handlers.TestUtils.toJson;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+
+import org.junit.jupiter.api.Test;
+
+class ExportFormatTest {
+
+  private static final String EXPORT = readResource("openapi_docs/nva/nva-publication-api.yaml");
+
+  @Test
+  void shouldParseJsonExportIntoSameModelAsYamlExport() {
+    var fromYaml = ExportFormat.YAML.parse(EXPORT);
+    var fromJson = ExportFormat.JSON.parse(toJson(EXPORT));
+
+    assertThat(fromJson, is(equalTo(fromYaml)));
+  }
+
+  @Test
+  void shouldConvertJsonExportToEquivalentYaml() {
+    var yaml = ExportFormat.JSON.toYaml(toJson(EXPORT));
+
+    assertThat(ExportFormat.YAML.parse(yaml), is(equalTo(ExportFormat.YAML.parse(EXPORT))));
+  }
+
+  @Test
+  void shouldKeepYamlExportAsIs() {
+    assertThat(ExportFormat.YAML.toYaml(EXPORT), is(equalTo(EXPORT)));
+  }
+
+  @Test
+  void shouldExposeContentTypeAndExtension() {
+    assertThat(ExportFormat.JSON.getContentType(), is(equalTo("application/json")));
+    assertThat(ExportFormat.YAML.getExtension(), is(equalTo("yaml")));
+  }
+}
@@ -0,0 +1,90 @@
+package no.sikt.generator;
+
+import static no.sikt.generator.Utils.readResource;
+import static nva.commons.core.attempt.Try.attempt;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.sameInstance;
+
+import io.swagger.v3.oas.models.Components;
+import io.swagger.v3.oas.models.OpenAPI;
+import io.swagger.v3.oas.models.media.Schema;
+import io.swagger.v3.oas.models.media.StringSchema;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class OpenApiCombinerTest {
+
+  private static final String GOLDEN_COMBINED = "combined/internal.yaml";
+  private static final Path GOLDEN_SOURCE = Path.of("src/test/resources", GOLDEN_COMBINED);
+  private static final List<String> EXPORTS =
+      List.of(
+          "openapi_docs/same-schema-name/api-a.yaml",
+          "openapi_docs/same-schema-name/api-b.yaml",
+          "openapi_docs/nva/nva-courses-api.yaml",
+          "openapi_docs/nva/nva-cristin-proxy-api.yaml",
+          "openapi_docs/nva/nva-customer-api.yaml",
+          "openapi_docs/nva/nva-publication-api.yaml",
+          "openapi_docs/nva/nva-public-search-api.yaml",
+          "openapi_docs/nva/nva-roles-and-users-catalogue.yaml");
+
+  @Test
+  void shouldCombineIntoIdenticalDocumentInParallelAndSequentialMode() {
+    var sequential = combine(CombineMode.SEQUENTIAL);
+    var parallel = combine(CombineMode.PARALLEL);
+
+    assertThat(parallel, is(equalTo(sequential)));
+  }
+
+  /**
+   * Compares the combined document with the one checked in under {@code combined/internal.yaml}.
+   * After an intended change to it, regenerate the file with {@code ./gradlew test --tests
+   * OpenApiCombinerTest -Dgolden.update=true} and review the diff.
+   */
+  @Test
+  void shouldCombineIntoGoldenDocument() throws IOException {
+    var combined = combine(CombineMode.PARALLEL);
+    if (Boolean.getBoolean("golden.update")) {
+      Files.createDirectories(GOLDEN_SOURCE.getParent());
+      Files.writeString(GOLDEN_SOURCE, combined);
+    }
+
+    assertThat(combined, is(equalTo(Files.readString(GOLDEN_SOURCE))));
+  }
+
+  @Test
+  void shouldSortSchemasWithoutChangingTemplate() {
+    var schemas = new LinkedHashMap<String, Schema>();
+    schemas.put("Other", new StringSchema());
+    schemas.put("Error", new StringSchema());
+    var template = template().components(new Components().schemas(schemas));
+
+    var combined = new OpenApiCombiner(template, List.of(), CombineMode.SEQUENTIAL).combine();
+
+    assertThat(combined.getComponents().getSchemas().keySet(), contains("Error", "Other"));
+    assertThat(template.getComponents().getSchemas(), is(sameInstance(schemas)));
+    assertThat(schemas.keySet(), contains("Other", "Error"));
+  }
+
+  private static String combine(CombineMode mode) {
+    return write(new OpenApiCombiner(template(), exports(), mode).combine());
+  }
+
+  private static OpenAPI template() {
+    return ExportFormat.YAML.parse(readResource("internal.yaml"));
+  }
+
+  private static List<OpenAPI> exports() {
+    return EXPORTS.stream().map(export -> ExportFormat.YAML.parse(readResource(export))).toList();
+  }
+
+  private static String write(OpenAPI openApi) {
+    return attempt(() -> ExportFormat.YAML.writer().writeValueAsString(openApi)).orElseThrow();
+  }
+}
@@ -0,0 +1,139 @@
+package no.sikt.generator;
+
+import static nva.commons.core.attempt.Try.attempt;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import io.swagger.v3.oas.models.Components;
+import io.swagger.v3.oas.models.OpenAPI;
+import io.swagger.v3.oas.models.Operation;
+import io.swagger.v3.oas.models.PathItem;
+import io.swagger.v3.oas.models.Paths;
+import io.swagger.v3.oas.models.info.Info;
+import io.swagger.v3.oas.models.media.IntegerSchema;
+import io.swagger.v3.oas.models.media.Schema;
+import io.swagger.v3.oas.models.media.StringSchema;
+import io.swagger.v3.oas.models.parameters.Parameter;
+import io.swagger.v3.oas.models.security.SecurityRequirement;
+import io.swagger.v3.oas.models.security.SecurityScheme;
+import io.swagger.v3.oas.models.tags.Tag;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class OpenApiMergerTest {
+
+  private final OpenApiMerger merger = new OpenApiMerger(new SchemaFingerprints());
+
+  @Test
+  void shouldGiveSameDocumentRegardlessOfGrouping() {
+    var leftFirst = merger.merge(merger.merge(base(), part("a")), part("b"));
+    var rightFirst = merger.merge(base(), merger.merge(part("a"), part("b")));
+
+    assertThat(write(rightFirst), is(equalTo(write(leftFirst))));
+  }
+
+  @Test
+  void shouldKeepOrderOfPathsTagsAndSecurityRequirements() {
+    var merged = merger.merge(merger.merge(base(), part("a")), part("b"));
+
+    assertThat(merged.getPaths().keySet(), contains("/a", "/b"));
+    assertThat(merged.getTags().stream().map(Tag::getName).toList(), contains("a", "b"));
+    assertThat(merged.getSecurity(), contains(requirement("a"), requirement("b")));
+    assertThat(merged.getInfo().getTitle(), is(equalTo("Base")));
+  }
+
+  @Test
+  void shouldKeepEqualSchemaOfSameName() {
+    var merged = merger.merge(part("a"), part("b"));
+
+    assertThat(merged.getComponents().getSchemas().keySet(), contains("Error", "a", "b"));
+  }
+
+  @Test
+  void shouldRefuseUnequalSchemaOfSameName() {
+    var other = part("b");
+    other.getComponents().addSchemas("Error", new IntegerSchema());
+
+    assertThrows(IllegalStateException.class, () -> merger.merge(part("a"), other));
+  }
+
+  @Test
+  void shouldRefusePathDefinedTwice() {
+    assertThrows(IllegalStateException.class, () -> merger.merge(part("a"), part("a")));
+  }
+
+  @Test
+  void shouldLetLastParameterAndSecuritySchemeOfSameNameWin() {
+    var first = part("a");
+    var last = part("b");
+    first.getComponents().addSecuritySchemes("auth", new SecurityScheme().name("first"));
+    last.getComponents().addSecuritySchemes("auth", new SecurityScheme().name("last"));
+
+    var merged = merger.merge(first, last);
+
+    assertThat(merged.getComponents().getParameters().get("id").getName(), is(equalTo("b")));
+    assertThat(
+        merged.getComponents().getSecuritySchemes().get("auth").getName(), is(equalTo("last")));
+  }
+
+  @Test
+  void shouldLeaveOperandsUntouched() {
+    var base = base();
+    var part = part("a");
+    var written = write(base);
+
+    merger.merge(base, part);
+
+    assertThat(write(base), is(equalTo(written)));
+    assertThat(base.getPaths(), is(nullValue()));
+    assertThat(part.getPaths().keySet(), contains("/a"));
+  }
+
+  @Test
+  void shouldGiveMergedDocumentItsOwnContainersWhenRightAddsNothing() {
+    var base = base().paths(new Paths().addPathItem("/base", new PathItem()));
+    base.getComponents().addSchemas("Base", new StringSchema());
+
+    var merged = merger.merge(base, new OpenAPI().openapi(null));
+    merged.getComponents().addSchemas("Other", new StringSchema());
+    merged.getPaths().addPathItem("/other", new PathItem());
+
+    assertThat(merged.getComponents(), is(not(sameInstance(base.getComponents()))));
+    assertThat(merged.getComponents().getSchemas().keySet(), contains("Base", "Other"));
+    assertThat(base.getComponents().getSchemas().keySet(), contains("Base"));
+    assertThat(base.getPaths().keySet(), contains("/base"));
+    assertThat(merged.getOpenapi(), is(equalTo(base.getOpenapi())));
+  }
+
+  private static OpenAPI base() {
+    return new OpenAPI().info(new Info().title("Base")).components(new Components());
+  }
+
+  private static OpenAPI part(String name) {
+    var components =
+        new Components()
+            .addSchemas("Error", new StringSchema())
+            .addSchemas(name, new Schema().$ref("#/components/schemas/Error"))
+            .addParameters("id", new Parameter().name(name));
+    return new OpenAPI()
+        .openapi(null)
+        .paths(new Paths().addPathItem("/" + name, new PathItem().get(new Operation())))
+        .components(components)
+        .addTagsItem(new Tag().name(name))
+        .addSecurityItem(requirement(name));
+  }
+
+  private static SecurityRequirement requirement(String name) {
+    return new SecurityRequirement().addList(name);
+  }
+
+  private static String write(OpenAPI openApi) {
+    return attempt(() -> ExportFormat.YAML.writer().writeValueAsString(openApi)).orElseThrow();
+  }
+}
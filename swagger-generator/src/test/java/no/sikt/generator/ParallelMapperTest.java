@@ -0,0 +1,107 @@
+package no.sikt.generator;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class ParallelMapperTest {
+
+  @Test
+  void shouldReturnResultsInInputOrder() {
+    var mapper = new ParallelMapper(4);
+
+    var result = mapper.map(List.of(30, 10, 20, 0), ParallelMapperTest::sleepAndReturn);
+
+    assertThat(result, contains(30, 10, 20, 0));
+  }
+
+  @Test
+  void shouldKeepOtherResultsWhenOneItemFails() {
+    var mapper = new ParallelMapper(2);
+
+    var result =
+        mapper.map(
+            List.of("a", "fail", "b", "skip"),
+            item -> {
+              if ("fail".equals(item)) {
+                throw new IllegalStateException("boom");
+              }
+              return "skip".equals(item) ? null : item.toUpperCase(Locale.ROOT);
+            });
+
+    assertThat(result, contains("A", "B"));
+  }
+
+  @Test
+  void shouldFailWhenAnyItemFailsUnderMapAll() {
+    var mapper = new ParallelMapper(2);
+    var completed = new AtomicInteger();
+
+    var exception =
+        assertThrows(
+            IllegalStateException.class,
+            () ->
+                mapper.mapAll(
+                    List.of("a", "fail", "b"),
+                    item -> {
+                      if ("fail".equals(item)) {
+                        throw new IllegalStateException("boom");
+                      }
+                      return completed.incrementAndGet();
+                    }));
+
+    assertThat(exception.getMessage(), is(equalTo("boom")));
+    assertThat(completed.get(), is(equalTo(2)));
+  }
+
+  @Test
+  void shouldReturnAllResultsInInputOrderUnderMapAll() {
+    var mapper = new ParallelMapper(4);
+
+    var result = mapper.mapAll(List.of(30, 10, 20, 0), ParallelMapperTest::sleepAndReturn);
+
+    assertThat(result, contains(30, 10, 20, 0));
+  }
+
+  @Test
+  void shouldNeverRunMoreThanMaxConcurrencyAtOnce() {
+    var maxConcurrency = 3;
+    var mapper = new ParallelMapper(maxConcurrency);
+    var inFlight = new AtomicInteger();
+    var peak = new AtomicInteger();
+
+    mapper.map(
+        IntStream.range(0, 20).boxed().toList(),
+        item -> {
+          peak.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+          sleepAndReturn(5);
+          return inFlight.decrementAndGet();
+        });
+
+    assertThat(peak.get(), is(lessThanOrEqualTo(maxConcurrency)));
+    assertThat(mapper.getMaxConcurrency(), is(equalTo(maxConcurrency)));
+  }
+
+  @Test
+  void shouldRejectConcurrencyBelowOne() {
+    assertThrows(IllegalArgumentException.class, () -> new ParallelMapper(0));
+  }
+
+  private static Integer sleepAndReturn(Integer millis) {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    return millis;
+  }
+}
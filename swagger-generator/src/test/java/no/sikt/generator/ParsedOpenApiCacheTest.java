@@ -0,0 +1,135 @@
+package no.sikt.generator;
+
+import static no.sikt.generator.Utils.readResource;
+import static nva.commons.core.attempt.Try.attempt;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+
+import io.swagger.v3.oas.models.OpenAPI;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class ParsedOpenApiCacheTest {
+
+  private static final String API_A = document("API A");
+  private static final String API_B = document("API B");
+  private static final String API_C = document("API C");
+  private static final List<String> NVA_EXPORTS =
+      List.of(
+          "dlr-launchcanvas-api.yaml",
+          "nva-courses-api.yaml",
+          "nva-cristin-proxy-api.yaml",
+          "nva-customer-api.yaml",
+          "nva-download-publication-file-api.yaml",
+          "nva-fetch-doi.yaml",
+          "nva-ontology-service.yaml",
+          "nva-public-search-api.yaml",
+          "nva-publication-api.yaml",
+          "nva-publication-channels.yaml",
+          "nva-roles-and-users-catalogue.yaml",
+          "nva-s3-multipart-upload.yaml",
+          "nva-verified-funding-sources-api.yaml");
+
+  @Test
+  void shouldParseSameContentOnlyOnce() {
+    var cache = new ParsedOpenApiCache(ParsedOpenApiCache.DEFAULT_MAX_CHARACTERS);
+
+    var first = cache.parse(API_A, ExportFormat.YAML);
+    var second = cache.parse(API_A, ExportFormat.YAML);
+
+    assertThat(second, is(equalTo(first)));
+    assertThat(cache.getMisses(), is(equalTo(1L)));
+    assertThat(cache.getHits(), is(equalTo(1L)));
+  }
+
+  @Test
+  void shouldHandOutIndependentCopies() {
+    var cache = new ParsedOpenApiCache(ParsedOpenApiCache.DEFAULT_MAX_CHARACTERS);
+
+    var first = cache.parse(API_A, ExportFormat.YAML);
+    first.getInfo().setTitle("Mutated");
+    var second = cache.parse(API_A, ExportFormat.YAML);
+
+    assertThat(second, is(not(sameInstance(first))));
+    assertThat(second.getInfo().getTitle(), is(equalTo("API A")));
+  }
+
+  @Test
+  void shouldCopyEverythingThatIsWrittenOut() {
+    var cache = new ParsedOpenApiCache(ParsedOpenApiCache.DEFAULT_MAX_CHARACTERS);
+    var export = readResource("openapi_docs/nva/nva-publication-api.yaml");
+
+    var parsed = ExportFormat.YAML.parse(export);
+    cache.parse(export, ExportFormat.YAML);
+
+    assertThat(write(cache.parse(export, ExportFormat.YAML)), is(equalTo(write(parsed))));
+  }
+
+  @Test
+  void shouldHandOutCopiesEqualToFreshParse() {
+    var cache = new ParsedOpenApiCache(ParsedOpenApiCache.DEFAULT_MAX_CHARACTERS);
+
+    for (var resource : NVA_EXPORTS) {
+      var export = readResource("openapi_docs/nva/" + resource);
+      var parsed = ExportFormat.YAML.parse(export);
+
+      assertThat(resource, cache.parse(export, ExportFormat.YAML), is(equalTo(parsed)));
+      assertThat(resource, cache.parse(export, ExportFormat.YAML), is(equalTo(parsed)));
+    }
+  }
+
+  @Test
+  void shouldEvictLeastRecentlyUsedEntryWhenFull() {
+    var cache = new ParsedOpenApiCache(API_A.length() + API_B.length());
+
+    cache.parse(API_A, ExportFormat.YAML);
+    cache.parse(API_B, ExportFormat.YAML);
+    cache.parse(API_A, ExportFormat.YAML);
+    cache.parse(API_C, ExportFormat.YAML);
+    cache.parse(API_A, ExportFormat.YAML);
+    cache.parse(API_B, ExportFormat.YAML);
+
+    assertThat(cache.getHits(), is(equalTo(2L)));
+    assertThat(cache.getMisses(), is(equalTo(4L)));
+    assertThat(cache.getEvictions(), is(equalTo(2L)));
+    assertThat(cache.size(), is(equalTo(2)));
+    assertThat(cache.getRetainedCharacters(), is(equalTo((long) API_A.length() + API_B.length())));
+  }
+
+  @Test
+  void shouldKeepNewestEntryLargerThanMaximum() {
+    var cache = new ParsedOpenApiCache(API_A.length() - 1);
+
+    cache.parse(API_A, ExportFormat.YAML);
+    cache.parse(API_B, ExportFormat.YAML);
+    cache.parse(API_B, ExportFormat.YAML);
+
+    assertThat(cache.getHits(), is(equalTo(1L)));
+    assertThat(cache.size(), is(equalTo(1)));
+  }
+
+  @Test
+  void shouldCountEachRunFromZeroAfterReset() {
+    var cache = new ParsedOpenApiCache(ParsedOpenApiCache.DEFAULT_MAX_CHARACTERS);
+    cache.parse(API_A, ExportFormat.YAML);
+
+    cache.resetStatistics();
+    cache.parse(API_A, ExportFormat.YAML);
+    cache.logStatistics();
+
+    assertThat(cache.getMisses(), is(equalTo(0L)));
+    assertThat(cache.getHits(), is(equalTo(1L)));
+  }
+
+  private static String write(OpenAPI openApi) {
+    return attempt(() -> ExportFormat.YAML.writer().writeValueAsString(openApi)).orElseThrow();
+  }
+
+  private static String document(String title) {
+    return String.join(
+        "\n", "openapi: 3.0.1", "info:", "  title: " + title, "  version: '1.0'", "paths: {}", "");
+  }
+}
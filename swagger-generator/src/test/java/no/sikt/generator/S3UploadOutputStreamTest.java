@@ -0,0 +1,140 @@
+package no.sikt.generator;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.util.Map;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.AbortMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompleteMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CompletedPart;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadRequest;
+import software.amazon.awssdk.services.s3.model.CreateMultipartUploadResponse;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartRequest;
+import software.amazon.awssdk.services.s3.model.UploadPartResponse;
+
+class S3UploadOutputStreamTest {
+
+  private static final int PART_SIZE = 4;
+  private S3Client s3Client;
+
+  @BeforeEach
+  void setup() {
+    s3Client = mock(S3Client.class);
+    when(s3Client.createMultipartUpload(any(CreateMultipartUploadRequest.class)))
+        .thenReturn(CreateMultipartUploadResponse.builder().uploadId("upload").build());
+    when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+        .thenAnswer(
+            invocation -> {
+              var partNumber = invocation.getArgument(0, UploadPartRequest.class).partNumber();
+              return UploadPartResponse.builder().eTag("etag" + partNumber).build();
+            });
+  }
+
+  @Test
+  void shouldSendSmallObjectWithSinglePut() throws IOException {
+    var output = newStream();
+    output.write("abc".getBytes(UTF_8));
+    output.close();
+    output.close();
+
+    var captor = ArgumentCaptor.forClass(PutObjectRequest.class);
+    verify(s3Client).putObject(captor.capture(), any(RequestBody.class));
+    assertThat(captor.getValue().metadata(), is(equalTo(Map.of("content-sha256", "hash"))));
+    assertThat(output.isMultipart(), is(false));
+    assertThat(output.getBytesWritten(), is(equalTo(3L)));
+    verify(s3Client, never()).createMultipartUpload(any(CreateMultipartUploadRequest.class));
+  }
+
+  @Test
+  void shouldSwitchToMultipartUploadAboveOnePart() throws IOException {
+    var output = newStream();
+    output.write("0123456789".getBytes(UTF_8));
+    output.write('!');
+    output.close();
+
+    verify(s3Client, times(3)).uploadPart(any(UploadPartRequest.class), any(RequestBody.class));
+    var captor = ArgumentCaptor.forClass(CompleteMultipartUploadRequest.class);
+    verify(s3Client).completeMultipartUpload(captor.capture());
+    assertThat(
+        captor.getValue().multipartUpload().parts().stream().map(CompletedPart::eTag).toList(),
+        contains("etag1", "etag2", "etag3"));
+    assertThat(output.isMultipart(), is(true));
+    assertThat(output.getBytesWritten(), is(equalTo(11L)));
+    verify(s3Client, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+  }
+
+  @Test
+  void shouldAbortMultipartUploadWhenPartFails() throws IOException {
+    when(s3Client.uploadPart(any(UploadPartRequest.class), any(RequestBody.class)))
+        .thenThrow(new IllegalStateException("part failed"));
+    var output = newStream();
+
+    assertThrows(IllegalStateException.class, () -> output.write("01234".getBytes(UTF_8)));
+
+    verify(s3Client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+    assertThrows(IOException.class, () -> output.write('x'));
+  }
+
+  @Test
+  void shouldAbortMultipartUploadWhenCompletionFails() throws IOException {
+    when(s3Client.completeMultipartUpload(any(CompleteMultipartUploadRequest.class)))
+        .thenThrow(new IllegalStateException("complete failed"));
+    var output = newStream();
+    output.write("012345".getBytes(UTF_8));
+
+    assertThrows(IllegalStateException.class, output::close);
+
+    verify(s3Client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+  }
+
+  @Test
+  void shouldNotCreateObjectWhenAbortedBeforeClose() throws IOException {
+    var output = newStream();
+    output.write("abc".getBytes(UTF_8));
+
+    output.abort();
+    output.close();
+
+    verify(s3Client, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+    verify(s3Client, never()).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+  }
+
+  @Test
+  void shouldAbortStartedMultipartUploadWithoutCompletingIt() throws IOException {
+    var output = newStream();
+    output.write("012345".getBytes(UTF_8));
+
+    output.abort();
+    output.close();
+    output.abort();
+
+    verify(s3Client).abortMultipartUpload(any(AbortMultipartUploadRequest.class));
+    verify(s3Client, never()).completeMultipartUpload(any(CompleteMultipartUploadRequest.class));
+  }
+
+  private S3UploadOutputStream newStream() {
+    return new S3UploadOutputStream(
+        s3Client,
+        "bucket",
+        "docs/openapi.yaml",
+        ObjectHeaders.ofMetadata(Map.of("content-sha256", "hash")),
+        PART_SIZE);
+  }
+}
@@ -0,0 +1,84 @@
+package no.sikt.generator;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+
+import io.swagger.v3.oas.models.media.ArraySchema;
+import io.swagger.v3.oas.models.media.IntegerSchema;
+import io.swagger.v3.oas.models.media.ObjectSchema;
+import io.swagger.v3.oas.models.media.Schema;
+import io.swagger.v3.oas.models.media.StringSchema;
+import java.util.LinkedHashSet;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class SchemaFingerprintsTest {
+
+  private final SchemaFingerprints fingerprints = new SchemaFingerprints();
+
+  @Test
+  void shouldGiveSameFingerprintRegardlessOfPropertyOrder() {
+    var schema = new ObjectSchema().addProperty("id", new IntegerSchema());
+    schema.addProperty("name", new StringSchema());
+    var reordered = new ObjectSchema().addProperty("name", new StringSchema());
+    reordered.addProperty("id", new IntegerSchema());
+
+    assertThat(fingerprints.of(schema), is(equalTo(fingerprints.of(reordered))));
+    assertThat(fingerprints.areEqual(schema, reordered), is(true));
+  }
+
+  @Test
+  void shouldGiveDifferentFingerprintsForDifferentRefs() {
+    var schema = new ArraySchema().items(new Schema().$ref("#/components/schemas/Cristin"));
+    var other = new ArraySchema().items(new Schema().$ref("#/components/schemas/Publication"));
+
+    assertThat(fingerprints.of(schema), is(not(equalTo(fingerprints.of(other)))));
+    assertThat(fingerprints.areEqual(schema, other), is(false));
+  }
+
+  @Test
+  void shouldGiveDifferentFingerprintsForDifferentSchemaTypes() {
+    var schema = new ObjectSchema().addProperty("id", new IntegerSchema());
+    var other = new ObjectSchema().addProperty("id", new StringSchema());
+
+    assertThat(fingerprints.areEqual(schema, other), is(false));
+  }
+
+  @Test
+  void shouldGiveSameFingerprintRegardlessOfTypeOrder() {
+    var schema = new Schema().types(new LinkedHashSet<>(List.of("string", "null")));
+    var reordered = new Schema().types(new LinkedHashSet<>(List.of("null", "string")));
+
+    assertThat(fingerprints.of(schema), is(equalTo(fingerprints.of(reordered))));
+    assertThat(fingerprints.areEqual(schema, reordered), is(true));
+  }
+
+  @Test
+  void shouldConfirmEqualFingerprintsWithFullComparison() {
+    var schema = new StringSchema().example("Ola");
+    var other = new StringSchema().example("Kari");
+
+    assertThat(fingerprints.of(schema), is(equalTo(fingerprints.of(other))));
+    assertThat(fingerprints.areEqual(schema, other), is(false));
+  }
+
+  @Test
+  void shouldMemoizeFingerprintUntilSchemaIsForgotten() {
+    var reference = new Schema().$ref("#/components/schemas/Old");
+    var schema = new ObjectSchema().addProperty("ref", reference);
+    var before = fingerprints.of(schema);
+
+    reference.set$ref("#/components/schemas/New");
+    assertThat(fingerprints.of(schema), is(equalTo(before)));
+
+    fingerprints.forget(List.of(schema));
+    assertThat(fingerprints.of(schema), is(not(equalTo(before))));
+  }
+
+  @Test
+  void shouldTreatMissingSchemaAsUnequal() {
+    assertThat(fingerprints.areEqual(new StringSchema(), null), is(false));
+  }
+}
@@ -0,0 +1,118 @@
+package no.sikt.generator;
+
+import static no.sikt.generator.OpenApiUtils.COMPONENTS_SCHEMAS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+import static org.hamcrest.Matchers.is;
+
+import io.swagger.v3.oas.models.Components;
+import io.swagger.v3.oas.models.OpenAPI;
+import io.swagger.v3.oas.models.Operation;
+import io.swagger.v3.oas.models.PathItem;
+import io.swagger.v3.oas.models.Paths;
+import io.swagger.v3.oas.models.headers.Header;
+import io.swagger.v3.oas.models.media.ArraySchema;
+import io.swagger.v3.oas.models.media.Content;
+import io.swagger.v3.oas.models.media.MediaType;
+import io.swagger.v3.oas.models.media.ObjectSchema;
+import io.swagger.v3.oas.models.media.Schema;
+import io.swagger.v3.oas.models.parameters.Parameter;
+import io.swagger.v3.oas.models.parameters.RequestBody;
+import io.swagger.v3.oas.models.responses.ApiResponse;
+import io.swagger.v3.oas.models.responses.ApiResponses;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+class SchemaReferenceIndexTest {
+
+  private final Schema responseRef = ref("Item");
+  private final Schema requestRef = ref("Item");
+  private final Schema parameterRef = ref("Item");
+  private final Schema headerRef = ref("Item");
+  private final Schema nestedRef = ref("Item");
+  private final OpenAPI api = createApi();
+
+  @Test
+  void shouldIndexRefsFromPathsAndComponentSchemas() {
+    var index = SchemaReferenceIndex.of(api);
+
+    index.rename(Map.of("Unknown", "ApiUnknown"));
+
+    assertThat(refs(), everyItem(is(equalTo(COMPONENTS_SCHEMAS + "Item"))));
+    assertThat(index.referringSchemas("Item"), is(equalTo(Set.of("List"))));
+    assertThat(index.referringSchemas("Unknown"), is(empty()));
+  }
+
+  @Test
+  void shouldRenameEveryRefToRenamedSchema() {
+    var index = SchemaReferenceIndex.of(api);
+
+    index.rename(Map.of("Item", "ApiItem", "List", "ApiList"));
+
+    assertThat(refs(), everyItem(is(equalTo(COMPONENTS_SCHEMAS + "ApiItem"))));
+    assertThat(index.referringSchemas("ApiItem"), is(equalTo(Set.of("ApiList"))));
+    assertThat(index.referringSchemas("Item"), is(empty()));
+  }
+
+  @Test
+  void shouldFollowRenamedSchemaInLaterRenames() {
+    var index = SchemaReferenceIndex.of(api);
+    index.rename(Map.of("Item", "ApiItem"));
+
+    index.rename(Map.of("Item", "Stale", "ApiItem", "SharedItem"));
+
+    assertThat(refs(), everyItem(is(equalTo(COMPONENTS_SCHEMAS + "SharedItem"))));
+  }
+
+  @Test
+  void shouldRenameChainedNamesOnce() {
+    var otherRef = ref("ApiItem");
+    api.getComponents().addSchemas("Other", new ArraySchema().items(otherRef));
+    var index = SchemaReferenceIndex.of(api);
+
+    index.rename(Map.of("ApiItem", "ApiApiItem", "Item", "ApiItem"));
+
+    assertThat(nestedRef.get$ref(), is(equalTo(COMPONENTS_SCHEMAS + "ApiItem")));
+    assertThat(otherRef.get$ref(), is(equalTo(COMPONENTS_SCHEMAS + "ApiApiItem")));
+  }
+
+  private OpenAPI createApi() {
+    var operation =
+        new Operation()
+            .addParametersItem(new Parameter().name("item").schema(parameterRef))
+            .requestBody(new RequestBody().content(content(requestRef)))
+            .responses(
+                new ApiResponses()
+                    .addApiResponse(
+                        "200",
+                        new ApiResponse()
+                            .content(content(responseRef))
+                            .addHeaderObject("X-Item", new Header().schema(headerRef))));
+    var components =
+        new Components()
+            .addSchemas("Item", new ObjectSchema())
+            .addSchemas("List", new ArraySchema().items(nestedRef));
+    return new OpenAPI()
+        .paths(new Paths().addPathItem("/items", new PathItem().post(operation)))
+        .components(components);
+  }
+
+  private List<String> refs() {
+    return Stream.of(responseRef, requestRef, parameterRef, headerRef, nestedRef)
+        .map(Schema::get$ref)
+        .toList();
+  }
+
+  private static Content content(Schema schema) {
+    return new Content().addMediaType("application/json", new MediaType().schema(schema));
+  }
+
+  private static Schema ref(String name) {
+    return new Schema().$ref(COMPONENTS_SCHEMAS + name);
+  }
+}
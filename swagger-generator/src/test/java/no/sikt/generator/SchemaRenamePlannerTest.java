@@ -0,0 +1,91 @@
+package no.sikt.generator;
+
+import static no.sikt.generator.OpenApiUtils.COMPONENTS_SCHEMAS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.anEmptyMap;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import io.swagger.v3.oas.models.Components;
+import io.swagger.v3.oas.models.OpenAPI;
+import io.swagger.v3.oas.models.info.Info;
+import io.swagger.v3.oas.models.media.IntegerSchema;
+import io.swagger.v3.oas.models.media.ObjectSchema;
+import io.swagger.v3.oas.models.media.Schema;
+import io.swagger.v3.oas.models.media.StringSchema;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+
+class SchemaRenamePlannerTest {
+
+  @Test
+  void shouldRenameSchemasTheApisDisagreeOn() {
+    var apiA = api("Api A", Map.of("Item", new StringSchema(), "Error", new StringSchema()));
+    var apiB = api("Api B", Map.of("Item", new IntegerSchema(), "Error", new StringSchema()));
+
+    var plan = plan(apiA, apiB);
+
+    assertThat(plan.get(0), is(equalTo(Map.of("Item", "ApiAItem"))));
+    assertThat(plan.get(1), is(equalTo(Map.of("Item", "ApiBItem"))));
+  }
+
+  @Test
+  void shouldRenameSharedSchemasReferringToRenamedSchemasInOnePass() {
+    var apiA = api("Api A", Map.of("Item", new StringSchema(), "Wrapper", wrapper("Middle")));
+    apiA.getComponents().addSchemas("Middle", wrapper("Item"));
+    var apiB = api("Api B", Map.of("Item", new IntegerSchema(), "Wrapper", wrapper("Middle")));
+    apiB.getComponents().addSchemas("Middle", wrapper("Item"));
+
+    var plan = plan(apiA, apiB);
+
+    assertThat(
+        plan.get(0),
+        is(
+            equalTo(
+                Map.of("Item", "ApiAItem", "Middle", "ApiAMiddle", "Wrapper", "ApiAWrapper"))));
+  }
+
+  @Test
+  void shouldKeepNamesOfSchemasOnlyOneApiHas() {
+    var apiA = api("Api A", Map.of("Item", new StringSchema(), "Wrapper", wrapper("Item")));
+    var apiB = api("Api B", Map.of("Item", new IntegerSchema()));
+
+    var plan = plan(apiA, apiB);
+
+    assertThat(plan.get(0), is(equalTo(Map.of("Item", "ApiAItem"))));
+  }
+
+  @Test
+  void shouldPlanNothingWhenApisAgree() {
+    var apiA = api("Api A", Map.of("Error", new StringSchema()));
+    var apiB = api("Api B", Map.of("Error", new StringSchema()));
+
+    assertThat(plan(apiA, apiB).get(0), is(anEmptyMap()));
+  }
+
+  @Test
+  void shouldRefuseRenameThatCollidesWithAnotherSchemaInTheSameApi() {
+    var apiA = api("Api A", Map.of("Item", new StringSchema(), "ApiAItem", new StringSchema()));
+    var apiB = api("Api B", Map.of("Item", new IntegerSchema()));
+
+    assertThrows(IllegalStateException.class, () -> plan(apiA, apiB));
+  }
+
+  private static List<Map<String, String>> plan(OpenAPI... apis) {
+    var indexes = Stream.of(apis).map(SchemaReferenceIndex::of).toList();
+    return new SchemaRenamePlanner(List.of(apis), indexes, new SchemaFingerprints()).plan();
+  }
+
+  private static Schema wrapper(String ref) {
+    return new ObjectSchema().addProperty("value", new Schema().$ref(COMPONENTS_SCHEMAS + ref));
+  }
+
+  private static OpenAPI api(String title, Map<String, Schema> schemas) {
+    var components = new Components();
+    schemas.forEach(components::addSchemas);
+    return new OpenAPI().info(new Info().title(title)).components(components);
+  }
+}
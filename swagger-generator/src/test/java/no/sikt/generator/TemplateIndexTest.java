@@ -0,0 +1,127 @@
+package no.sikt.generator;
+
+import static no.sikt.generator.Utils.readResource;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import no.unit.nva.s3.S3Driver;
+import no.unit.nva.stubs.FakeS3Client;
+import nva.commons.core.paths.UnixPath;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+class TemplateIndexTest {
+
+  private static final String BUCKET = "templates";
+  @TempDir private Path cacheDirectory;
+  private FakeS3Client s3Client;
+  private S3Driver s3Driver;
+
+  @BeforeEach
+  void setup() throws IOException {
+    s3Client = new FakeS3Client();
+    s3Driver = new S3Driver(s3Client, BUCKET);
+    s3Driver.insertFile(UnixPath.of("api-a.yaml"), readResource("openapi_docs/api-a.yaml"));
+    s3Driver.insertFile(UnixPath.of("api-b.yaml"), readResource("openapi_docs/api-b.yaml"));
+  }
+
+  @Test
+  void shouldFindTemplateByTitle() {
+    var index = build(template("api-a.yaml", 1), template("api-b.yaml", 2));
+
+    var match = index.findByTitle("Api B");
+
+    assertThat(index.size(), is(equalTo(2)));
+    assertThat(match.orElseThrow().getLeft().key(), is(equalTo("api-b.yaml")));
+    assertThat(match.orElseThrow().getRight().getInfo().getTitle(), is(equalTo("Api B")));
+  }
+
+  @Test
+  void shouldReturnEmptyWhenNoTemplateHasTitle() {
+    var index = build(template("api-a.yaml", 1));
+
+    assertThat(index.findByTitle("Api B"), is(equalTo(Optional.empty())));
+  }
+
+  @Test
+  void shouldPreferOldestTemplateWhenTitlesCollide() throws IOException {
+    s3Driver.insertFile(UnixPath.of("api-a-copy.yaml"), readResource("openapi_docs/api-a.yaml"));
+
+    var index = build(template("api-a.yaml", 1), template("api-a-copy.yaml", 2));
+
+    assertThat(index.findByTitle("Api A").orElseThrow().getLeft().key(), is(equalTo("api-a.yaml")));
+  }
+
+  @Test
+  void shouldReuseTitleKnownFromEtagWithoutReadingTemplate() {
+    var eTag = UUID.randomUUID().toString();
+    build(template("api-a.yaml", 1, eTag));
+
+    var index = build(template("missing.yaml", 1, eTag));
+
+    assertThat(index.size(), is(equalTo(1)));
+  }
+
+  @Test
+  void shouldFailWhenTemplateCannotBeRead() {
+    var templates = new S3Object[] {template("api-a.yaml", 1), template("missing.yaml", 2)};
+
+    assertThrows(RuntimeException.class, () -> build(templates));
+  }
+
+  @Test
+  void shouldFailNamingTemplateWhoseTitleCannotBeScanned() throws IOException {
+    var yaml = "openapi: 3.0.1\npaths: [unclosed\ninfo:\n  title: Late\n";
+    s3Driver.insertFile(UnixPath.of("broken.yaml"), yaml);
+    var templates = new S3Object[] {template("api-a.yaml", 1), template("broken.yaml", 2)};
+
+    var exception = assertThrows(IllegalStateException.class, () -> build(templates));
+
+    assertThat(exception.getMessage(), is(equalTo("Could not read title of template broken.yaml")));
+  }
+
+  @Test
+  void shouldStopScanningAtTitle() throws IOException {
+    var yaml = "openapi: 3.0.1\ninfo:\n  title: Early\n  version: '1'\npaths: [unclosed";
+
+    var title = TemplateIndex.scanTitle(yaml);
+
+    assertThat(title, is(equalTo(Optional.of("Early"))));
+  }
+
+  @Test
+  void shouldReturnEmptyTitleWhenDocumentHasNoInfo() throws IOException {
+    var yaml = "openapi: 3.0.1\npaths:\n  /a: {}\n";
+
+    var title = TemplateIndex.scanTitle(yaml);
+
+    assertThat(title, is(equalTo(Optional.empty())));
+  }
+
+  private TemplateIndex build(S3Object... templates) {
+    var templateStore = new TemplateStore(s3Client, BUCKET, cacheDirectory);
+    return TemplateIndex.build(templateStore, List.of(templates), new ParallelMapper(2));
+  }
+
+  private static S3Object template(String key, long epochSecond) {
+    return template(key, epochSecond, null);
+  }
+
+  private static S3Object template(String key, long epochSecond, String eTag) {
+    return S3Object.builder()
+        .key(key)
+        .eTag(eTag)
+        .lastModified(Instant.ofEpochSecond(epochSecond))
+        .build();
+  }
+}
@@ -0,0 +1,158 @@
+package no.sikt.generator;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import java.io.IOException;
+import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import software.amazon.awssdk.core.ResponseBytes;
+import software.amazon.awssdk.core.sync.ResponseTransformer;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.GetObjectResponse;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+class TemplateStoreTest {
+
+  private static final String BUCKET = "templates";
+  private static final String CONTENT = "openapi: 3.0.1";
+  @TempDir private Path cacheDirectory;
+  private S3Client s3Client;
+
+  @SuppressWarnings("unchecked")
+  @BeforeEach
+  void setup() {
+    s3Client = mock(S3Client.class);
+    when(s3Client.getObject(any(GetObjectRequest.class), any(ResponseTransformer.class)))
+        .thenAnswer(
+            invocation ->
+                ResponseBytes.fromByteArray(
+                    GetObjectResponse.builder().build(), CONTENT.getBytes()));
+  }
+
+  @Test
+  void shouldListTemplatesOnEveryPageOldestFirst() {
+    when(s3Client.listObjectsV2(any(ListObjectsV2Request.class)))
+        .thenAnswer(
+            invocation -> {
+              var token = invocation.getArgument(0, ListObjectsV2Request.class).continuationToken();
+              return "next".equals(token)
+                  ? ListObjectsV2Response.builder()
+                      .contents(template("old.yaml", 1, "a"), template("readme.md", 3, "b"))
+                      .build()
+                  : ListObjectsV2Response.builder()
+                      .contents(template("new.yaml", 2, "c"))
+                      .isTruncated(true)
+                      .nextContinuationToken("next")
+                      .build();
+            });
+
+    var templates = newStore().listTemplates();
+
+    assertThat(templates.stream().map(S3Object::key).toList(), contains("old.yaml", "new.yaml"));
+  }
+
+  @Test
+  void shouldNotDownloadUnchangedTemplateAgain() {
+    var template = template("api.yaml", 1, "etag1");
+    var store = newStore();
+
+    store.read(template);
+    store.read(template);
+
+    assertThat(store.read(template), is(equalTo(CONTENT)));
+    assertThat(store.getDownloads(), is(equalTo(1L)));
+    assertThat(store.getMemoryHits(), is(equalTo(2L)));
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  void shouldReadTemplateDownloadedByEarlierContainerFromDisk() {
+    var template = template("api.yaml", 1, "etag1");
+    newStore().read(template);
+
+    var coldStartStore = newStore();
+    var content = coldStartStore.read(template);
+    coldStartStore.logStatistics();
+
+    assertThat(content, is(equalTo(CONTENT)));
+    assertThat(coldStartStore.getDiskHits(), is(equalTo(1L)));
+    assertThat(coldStartStore.getDownloads(), is(equalTo(0L)));
+    verify(s3Client, times(1))
+        .getObject(any(GetObjectRequest.class), any(ResponseTransformer.class));
+  }
+
+  @Test
+  void shouldDownloadTemplateAgainWhenEtagChanges() {
+    var store = newStore();
+
+    store.read(template("api.yaml", 1, "etag1"));
+    store.read(template("api.yaml", 2, "etag2"));
+
+    assertThat(store.getDownloads(), is(equalTo(2L)));
+  }
+
+  @Test
+  void shouldDeleteCachedFilesOfChangedAndRemovedTemplatesWhenListing() throws IOException {
+    var store = newStore();
+    store.read(template("api.yaml", 1, "etag1"));
+    store.read(template("other.yaml", 1, "etag3"));
+    when(s3Client.listObjectsV2(any(ListObjectsV2Request.class)))
+        .thenReturn(
+            ListObjectsV2Response.builder().contents(template("api.yaml", 2, "etag2")).build());
+
+    store.listTemplates().forEach(store::read);
+
+    try (var files = Files.list(cacheDirectory)) {
+      assertThat(
+          files.map(file -> file.getFileName().toString()).toList(),
+          contains(URLEncoder.encode("api.yaml@etag2", UTF_8)));
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  @Test
+  void shouldMakeNoRequestsForUnchangedTemplatesOnWarmRun() {
+    var template = template("api.yaml", 1, "etag1");
+    when(s3Client.listObjectsV2(any(ListObjectsV2Request.class)))
+        .thenReturn(ListObjectsV2Response.builder().contents(template).build());
+    var store = newStore();
+    store.listTemplates().forEach(store::read);
+    clearInvocations(s3Client);
+
+    store.listTemplates().forEach(store::read);
+
+    verify(s3Client, never())
+        .getObject(any(GetObjectRequest.class), any(ResponseTransformer.class));
+  }
+
+  private TemplateStore newStore() {
+    return new TemplateStore(s3Client, BUCKET, cacheDirectory);
+  }
+
+  private static S3Object template(String key, long epochSecond, String eTag) {
+    return S3Object.builder()
+        .key(key)
+        .eTag(eTag)
+        .lastModified(Instant.ofEpochSecond(epochSecond))
+        .build();
+  }
+}
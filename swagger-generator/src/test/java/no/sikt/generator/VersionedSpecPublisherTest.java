@@ -0,0 +1,171 @@
+package no.sikt.generator;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.matchesPattern;
+import static org.hamcrest.Matchers.not;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.swagger.v3.core.util.Json;
+import io.swagger.v3.core.util.Yaml;
+import io.swagger.v3.oas.models.OpenAPI;
+import io.swagger.v3.oas.models.info.Info;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import no.unit.nva.s3.S3Driver;
+import no.unit.nva.stubs.FakeS3Client;
+import nva.commons.core.attempt.Try;
+import nva.commons.core.paths.UnixPath;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.DeleteObjectRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.S3Object;
+
+class VersionedSpecPublisherTest {
+
+  private static final String BUCKET = "docs";
+  private static final String BASENAME = "docs/openapi";
+  private static final String MANIFEST_KEY = "docs/openapi.manifest.json";
+  private static final Duration RETENTION = Duration.ofDays(30);
+  private static final List<ExportFormat> FORMATS = List.of(ExportFormat.YAML, ExportFormat.JSON);
+  private static final List<ContentEncoding> ENCODINGS =
+      List.of(ContentEncoding.IDENTITY, ContentEncoding.GZIP);
+
+  @Test
+  void shouldPublishContentHashedVersionsAndPointManifestAtThem() {
+    var s3Client = new FakeS3Client();
+    var s3Driver = new S3Driver(s3Client, BUCKET);
+    var openApi = openApi("1.0");
+
+    var changed = newPublisher(s3Client).publish(BUCKET, BASENAME, openApi);
+
+    assertThat(changed, contains(MANIFEST_KEY));
+    var manifest = readManifest(s3Driver);
+    var yamlKey = manifest.get("yaml").asText();
+    var jsonKey = manifest.get("json").asText();
+    assertThat(yamlKey, matchesPattern("docs/openapi\\.[0-9a-f]{16}\\.yaml"));
+    assertThat(jsonKey, matchesPattern("docs/openapi\\.[0-9a-f]{16}\\.json"));
+    assertThat(s3Driver.getFile(UnixPath.of(yamlKey)), is(equalTo(Yaml.pretty(openApi))));
+    assertThat(
+        s3Driver.getFile(UnixPath.of(jsonKey)),
+        is(equalTo(Try.attempt(() -> Json.mapper().writeValueAsString(openApi)).orElseThrow())));
+  }
+
+  @Test
+  void shouldLeaveManifestAloneWhenSpecIsUnchanged() {
+    var s3Client = new FakeS3Client();
+    var publisher = newPublisher(s3Client);
+    publisher.publish(BUCKET, BASENAME, openApi("1.0"));
+
+    var changed = publisher.publish(BUCKET, BASENAME, openApi("1.0"));
+
+    assertThat(changed, is(empty()));
+  }
+
+  @Test
+  void shouldPointManifestAtNewVersionWhenSpecChanges() {
+    var s3Client = new FakeS3Client();
+    var s3Driver = new S3Driver(s3Client, BUCKET);
+    var publisher = newPublisher(s3Client);
+    publisher.publish(BUCKET, BASENAME, openApi("1.0"));
+    var previousKey = readManifest(s3Driver).get("yaml").asText();
+
+    var changed = publisher.publish(BUCKET, BASENAME, openApi("2.0"));
+
+    assertThat(changed, contains(MANIFEST_KEY));
+    assertThat(readManifest(s3Driver).get("yaml").asText(), is(not(equalTo(previousKey))));
+    assertThat(
+        s3Driver.getFile(UnixPath.of(previousKey)), is(equalTo(Yaml.pretty(openApi("1.0")))));
+  }
+
+  @Test
+  void shouldDeleteOnlyVersionsReplacedLongerThanRetentionAgo() {
+    var s3Client = mock(S3Client.class);
+    var openApi = openApi("1.0");
+    var currentHash = new ChangeDetectingWriter(s3Client, null).hash(openApi, ExportFormat.YAML);
+    var currentKey = BASENAME + "." + currentHash.substring(0, 16) + ".yaml";
+    var now = Instant.now();
+    var listing =
+        ListObjectsV2Response.builder()
+            .isTruncated(false)
+            .contents(
+                version("docs/openapi.0123456789abcdef.yaml", now.minus(Duration.ofDays(400))),
+                version("docs/openapi.0123456789abcdef.yaml.gz", now.minus(Duration.ofDays(400))),
+                version("docs/openapi.456789abcdef0123.yaml", now.minus(Duration.ofDays(200))),
+                version("docs/openapi.456789abcdef0123.yaml.gz", now.minus(Duration.ofDays(200))),
+                version(currentKey, now),
+                version(currentKey + ".gz", now),
+                version(MANIFEST_KEY, now.minus(Duration.ofDays(400))),
+                version("docs/openapi.yaml", now.minus(Duration.ofDays(400))))
+            .build();
+    when(s3Client.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(listing);
+    var publisher = newPublisher(s3Client);
+
+    publisher.publish(BUCKET, BASENAME, openApi);
+    publisher.logStatistics();
+
+    var captor = ArgumentCaptor.forClass(DeleteObjectRequest.class);
+    verify(s3Client, times(2)).deleteObject(captor.capture());
+    assertThat(
+        captor.getAllValues().stream().map(DeleteObjectRequest::key).toList(),
+        containsInAnyOrder(
+            "docs/openapi.0123456789abcdef.yaml", "docs/openapi.0123456789abcdef.yaml.gz"));
+    assertThat(publisher.getDeleted(), is(equalTo(2L)));
+    assertThat(publisher.getPeakHeapBytes(), is(greaterThan(0L)));
+  }
+
+  @Test
+  void shouldKeepCurrentVersionWhenAnOlderSpecIsPublishedAgain() {
+    var s3Client = mock(S3Client.class);
+    var openApi = openApi("1.0");
+    var currentHash = new ChangeDetectingWriter(s3Client, null).hash(openApi, ExportFormat.YAML);
+    var currentKey = BASENAME + "." + currentHash.substring(0, 16) + ".yaml";
+    var now = Instant.now();
+    var listing =
+        ListObjectsV2Response.builder()
+            .isTruncated(false)
+            .contents(
+                version(currentKey, now.minus(Duration.ofDays(400))),
+                version("docs/openapi.fedcba9876543210.yaml", now.minus(Duration.ofDays(200))))
+            .build();
+    when(s3Client.listObjectsV2(any(ListObjectsV2Request.class))).thenReturn(listing);
+    var publisher = newPublisher(s3Client);
+
+    publisher.publish(BUCKET, BASENAME, openApi);
+
+    verify(s3Client, times(0)).deleteObject(any(DeleteObjectRequest.class));
+    assertThat(publisher.getDeleted(), is(equalTo(0L)));
+  }
+
+  private static VersionedSpecPublisher newPublisher(S3Client s3Client) {
+    return new VersionedSpecPublisher(
+        s3Client, new ChangeDetectingWriter(s3Client, null), FORMATS, ENCODINGS, RETENTION);
+  }
+
+  private static OpenAPI openApi(String version) {
+    return new OpenAPI().info(new Info().title("Combined").version(version));
+  }
+
+  private static S3Object version(String key, Instant lastModified) {
+    return S3Object.builder().key(key).lastModified(lastModified).build();
+  }
+
+  private static JsonNode readManifest(S3Driver s3Driver) {
+    var manifest = s3Driver.getFile(UnixPath.of(MANIFEST_KEY));
+    return Try.attempt(() -> Json.mapper().readTree(manifest)).orElseThrow();
+  }
+}
@@ -2,11 +2,14 @@ package no.sikt.generator.handlers;
 
 import static no.sikt.generator.ApplicationConstants.EXTERNAL_BUCKET_NAME;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.allOf;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
 import static org.hamcrest.Matchers.hasItem;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.matchesPattern;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
@@ -22,6 +25,7 @@ import java.util.Optional;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import no.sikt.generator.CloudFrontHighLevelClient;
+import no.sikt.generator.ExportFormat;
 import no.unit.nva.s3.S3Driver;
 import no.unit.nva.stubs.FakeS3Client;
 import nva.commons.core.paths.UnixPath;
@@ -41,6 +45,8 @@ class GenerateExternalDocsHandlerTest {
   private static final String API_WITH_EXTERNAL_FILE = "api-with-external.yaml";
   private static final String API_FILE = "api.yaml";
   private static final OpenAPIV3Parser PARSER = new OpenAPIV3Parser();
+  private static final String COMBINED_SPEC_KEY =
+      "docs/openapi\\.(manifest\\.json|[0-9a-f]{16}\\.(json|yaml)(\\.gz)?)";
 
   private GenerateExternalDocsHandler handler;
   private S3Driver s3Driver;
@@ -117,7 +123,7 @@ class GenerateExternalDocsHandlerTest {
     setupSimpleMocks();
     handler.handleRequest(null, null, null);
 
-    var combinedFile = s3Driver.getFile(UnixPath.of("docs/openapi.yaml"));
+    var combinedFile = TestUtils.readCombinedSpec(s3Driver, ExportFormat.YAML);
     assertThat(combinedFile, notNullValue());
   }
 
@@ -240,9 +246,22 @@ class GenerateExternalDocsHandlerTest {
 
     handler.handleRequest(null, null, null);
 
-    var files = s3Driver.listAllFiles(UnixPath.of("docs/"));
-    assertThat(files, hasSize(1));
-    assertThat(files.get(0).toString(), equalTo("docs/openapi.yaml"));
+    var files = s3Driver.listAllFiles(UnixPath.of("docs/")).stream().map(UnixPath::toString);
+    assertThat(
+        files.toList(),
+        allOf(
+            hasSize(5),
+            hasItem("docs/openapi.manifest.json"),
+            everyItem(matchesPattern(COMBINED_SPEC_KEY))));
+  }
+
+  @Test
+  void shouldWriteJsonRenditionOfTheSameCombinedOpenApi() {
+    var openApi = generateOpenApiFromExternalSpecs();
+
+    var json = TestUtils.readCombinedSpec(s3Driver, ExportFormat.JSON);
+
+    assertThat(PARSER.readContents(json).getOpenAPI(), is(equalTo(openApi)));
   }
 
   @Test
@@ -271,7 +290,7 @@ class GenerateExternalDocsHandlerTest {
   }
 
   private OpenAPI readGeneratedOpenApi() {
-    var yaml = s3Driver.getFile(UnixPath.of("docs/openapi.yaml"));
+    var yaml = TestUtils.readCombinedSpec(s3Driver, ExportFormat.YAML);
     assertThat(yaml, notNullValue());
 
     return PARSER.readContents(yaml).getOpenAPI();
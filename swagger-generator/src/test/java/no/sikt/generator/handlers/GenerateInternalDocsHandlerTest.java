@@ -3,6 +3,7 @@ package no.sikt.generator.handlers;
 import static no.sikt.generator.ApplicationConstants.INTERNAL_BUCKET_NAME;
 import static no.sikt.generator.Utils.readResource;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.emptyString;
 import static org.hamcrest.Matchers.equalTo;
@@ -12,8 +13,12 @@ import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -27,9 +32,11 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map.Entry;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import no.sikt.generator.CloudFrontHighLevelClient;
+import no.sikt.generator.ExportFormat;
 import no.sikt.generator.OpenApiUtils;
 import no.unit.nva.s3.S3Driver;
 import no.unit.nva.stubs.FakeS3Client;
@@ -41,7 +48,9 @@ import org.apache.commons.lang3.tuple.Pair;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.function.Executable;
+import org.mockito.ArgumentCaptor;
 import software.amazon.awssdk.services.apigateway.ApiGatewayAsyncClient;
+import software.amazon.awssdk.services.apigateway.model.GetExportRequest;
 import software.amazon.awssdk.services.cloudfront.CloudFrontClient;
 import software.amazon.awssdk.services.cloudfront.model.CreateInvalidationRequest;
 import software.amazon.awssdk.services.s3.S3Client;
@@ -51,6 +60,7 @@ class GenerateInternalDocsHandlerTest {
   private static final OpenAPIV3Parser PARSER = new OpenAPIV3Parser();
   private GenerateInternalDocsHandler handler;
   private S3Driver outputS3Driver;
+  private S3Client outputS3client;
   private S3Client inputS3client;
   private ApiGatewayAsyncClient apiGatewayAsyncClient;
   private CloudFrontClient cloudFrontClient;
@@ -62,7 +72,7 @@ class GenerateInternalDocsHandlerTest {
     apiGatewayAsyncClient = mock(ApiGatewayAsyncClient.class);
     when(mockApiGatewaySupplier.get()).thenReturn(apiGatewayAsyncClient);
 
-    var outputS3client = new FakeS3Client();
+    this.outputS3client = new FakeS3Client();
     this.inputS3client = new FakeS3Client();
     this.outputS3Driver = new S3Driver(outputS3client, INTERNAL_BUCKET_NAME);
 
@@ -151,9 +161,11 @@ class GenerateInternalDocsHandlerTest {
 
     var singleFile = outputS3Driver.getFile(UnixPath.of("docs/api-a.yaml"));
     assertThat(singleFile, notNullValue());
-    assertThat(singleFile, is(equalTo(readResource("openapi_docs/api-a.yaml"))));
+    assertThat(
+        PARSER.readContents(singleFile).getOpenAPI(),
+        is(equalTo(PARSER.readContents(readResource("openapi_docs/api-a.yaml")).getOpenAPI())));
 
-    var combinedFile = outputS3Driver.getFile(UnixPath.of("docs/openapi.yaml"));
+    var combinedFile = TestUtils.readCombinedSpec(outputS3Driver, ExportFormat.YAML);
     assertThat(combinedFile, notNullValue());
   }
 
@@ -366,8 +378,76 @@ class GenerateInternalDocsHandlerTest {
     verify(cloudFrontClient).createInvalidation(any(CreateInvalidationRequest.class));
   }
 
+  @Test
+  void shouldInvalidateOnlyTheWrittenPaths() {
+    setupSimpleMocks();
+
+    handler.handleRequest(null, null, null);
+
+    var captor = ArgumentCaptor.forClass(CreateInvalidationRequest.class);
+    verify(cloudFrontClient).createInvalidation(captor.capture());
+    assertThat(
+        captor.getValue().invalidationBatch().paths().items(),
+        containsInAnyOrder(
+            "/docs/api-a.yaml",
+            "/docs/api-a.yaml.gz",
+            "/docs/api-b.yaml",
+            "/docs/api-b.yaml.gz",
+            "/docs/openapi.manifest.json"));
+  }
+
+  @Test
+  void shouldNotWriteOrInvalidateAgainWhenPublishedDocsAreUnchanged() {
+    setupSimpleMocks();
+
+    handler.handleRequest(null, null, null);
+    handler.handleRequest(null, null, null);
+
+    verify(cloudFrontClient, times(1)).createInvalidation(any(CreateInvalidationRequest.class));
+    assertThat(handler.changeDetectingWriter.getSkipped(), is(equalTo(5L)));
+  }
+
+  @Test
+  void shouldNotFetchExportsAgainWhenDeploymentIsUnchanged() {
+    setupSimpleMocks();
+
+    handler.handleRequest(null, null, null);
+    handler.handleRequest(null, null, null);
+
+    verify(apiGatewayAsyncClient, times(2)).getExport(any(GetExportRequest.class));
+  }
+
+  @Test
+  void shouldReuseExportsPersistedByEarlierContainer() {
+    setupSimpleMocks();
+    handler.handleRequest(null, null, null);
+
+    var coldStartHandler =
+        new GenerateInternalDocsHandler(
+            () -> apiGatewayAsyncClient,
+            new CloudFrontHighLevelClient(() -> cloudFrontClient),
+            outputS3client,
+            inputS3client);
+    coldStartHandler.handleRequest(null, null, null);
+
+    verify(apiGatewayAsyncClient, times(2)).getExport(any(GetExportRequest.class));
+  }
+
+  @Test
+  void shouldFailWithoutPublishingWhenAnExportCannotBeFetched() {
+    setupSimpleMocks();
+    when(apiGatewayAsyncClient.getExport(
+            argThat((GetExportRequest request) -> "api-b".equals(request.restApiId()))))
+        .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("export failed")));
+
+    assertThrows(RuntimeException.class, () -> handler.handleRequest(null, null, null));
+
+    verify(cloudFrontClient, never()).createInvalidation(any(CreateInvalidationRequest.class));
+    assertThat(handler.changeDetectingWriter.getWritten(), is(equalTo(0L)));
+  }
+
   private OpenAPI readGeneratedOpenApi() {
-    var yaml = outputS3Driver.getFile(UnixPath.of("docs/openapi.yaml"));
+    var yaml = TestUtils.readCombinedSpec(outputS3Driver, ExportFormat.YAML);
     assertThat(yaml, notNullValue());
 
     return PARSER.readContents(yaml).getOpenAPI();
@@ -1,18 +1,41 @@
 package no.sikt.generator.handlers;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static no.sikt.generator.ApplicationConstants.EXTERNAL_BUCKET_NAME;
 import static no.sikt.generator.ApplicationConstants.INTERNAL_BUCKET_NAME;
+import static no.sikt.generator.handlers.InstallSwaggerUiHandler.RELEASE_MARKER;
+import static no.sikt.generator.handlers.InstallSwaggerUiHandler.SWAGGER_INITIALIZER_JS;
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.is;
 import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.CompletableFuture;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 import no.sikt.generator.GithubApiResponse;
 import no.sikt.generator.Utils;
 import no.unit.nva.s3.S3Driver;
@@ -21,27 +44,44 @@ import nva.commons.core.paths.UnixPath;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.function.Executable;
+import org.mockito.ArgumentCaptor;
+import software.amazon.awssdk.core.sync.RequestBody;
+import software.amazon.awssdk.services.s3.S3Client;
+import software.amazon.awssdk.services.s3.model.GetObjectRequest;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Request;
+import software.amazon.awssdk.services.s3.model.ListObjectsV2Response;
+import software.amazon.awssdk.services.s3.model.PutObjectRequest;
+import software.amazon.awssdk.services.s3.model.S3Object;
+import software.amazon.awssdk.services.s3.paginators.ListObjectsV2Iterable;
 
 class InstallSwaggerUiHandlerTest {
 
+  private static final String RELEASE_ETAG = "\"release-etag\"";
   private final HttpClient httpClient = mock(HttpClient.class);
   private InstallSwaggerUiHandler handler;
+  private FakeS3Client fakeS3Client;
   private S3Driver s3DriverExternal;
   private S3Driver s3DriverInternal;
+  private HttpResponse<Object> gitHubResponse;
+  private HttpResponse<Object> downloadResponse;
 
-  @SuppressWarnings("PMD.CloseResource")
+  @SuppressWarnings({"unchecked", "PMD.CloseResource"})
   @BeforeEach
   void setup() throws IOException, InterruptedException {
-    var fakeS3Client = new FakeS3Client();
+    fakeS3Client = new FakeS3Client();
     this.s3DriverExternal = new S3Driver(fakeS3Client, EXTERNAL_BUCKET_NAME);
     this.s3DriverInternal = new S3Driver(fakeS3Client, INTERNAL_BUCKET_NAME);
 
     handler = new InstallSwaggerUiHandler(httpClient, fakeS3Client);
 
-    HttpResponse<Object> gitHubResponse = mock(HttpResponse.class);
-    HttpResponse<Object> downloadResponse = mock(HttpResponse.class);
+    gitHubResponse = mock(HttpResponse.class);
+    downloadResponse = mock(HttpResponse.class);
 
-    when(gitHubResponse.body()).thenReturn(new GithubApiResponse("http://example.org").toString());
+    when(gitHubResponse.statusCode()).thenReturn(200);
+    when(gitHubResponse.headers())
+        .thenReturn(HttpHeaders.of(Map.of("ETag", List.of(RELEASE_ETAG)), (name, value) -> true));
+    when(gitHubResponse.body())
+        .thenReturn(new GithubApiResponse("http://example.org", "v5.0.0").toString());
     when(downloadResponse.body()).thenReturn(Utils.readResourceAsStream("zippedfile.zip"));
 
     when(httpClient.send(any(), any())).thenReturn(gitHubResponse);
@@ -62,7 +102,8 @@ class InstallSwaggerUiHandlerTest {
     assertThat(s3DriverExternal.getFile(UnixPath.of("file1.txt")), notNullValue());
     assertThat(s3DriverExternal.getFile(UnixPath.of("file2.txt")), notNullValue());
     assertThat(s3DriverExternal.getFile(UnixPath.of("swagger-initializer.js")), notNullValue());
-    assertThat(s3DriverExternal.getFiles(UnixPath.of("/")), hasSize(3));
+    assertThat(s3DriverExternal.getFile(UnixPath.of("swagger-ui-release.json")), notNullValue());
+    assertThat(s3DriverExternal.getFiles(UnixPath.of("/")), hasSize(4));
   }
 
   @Test
@@ -72,6 +113,117 @@ class InstallSwaggerUiHandlerTest {
     assertThat(s3DriverInternal.getFile(UnixPath.of("file1.txt")), notNullValue());
     assertThat(s3DriverInternal.getFile(UnixPath.of("file2.txt")), notNullValue());
     assertThat(s3DriverInternal.getFile(UnixPath.of("swagger-initializer.js")), notNullValue());
-    assertThat(s3DriverInternal.getFiles(UnixPath.of("/")), hasSize(3));
+    assertThat(s3DriverInternal.getFile(UnixPath.of("swagger-ui-release.json")), notNullValue());
+    assertThat(s3DriverInternal.getFiles(UnixPath.of("/")), hasSize(4));
+  }
+
+  @Test
+  void shouldNotDownloadReleaseThatIsAlreadyInstalled() {
+    handler.handleRequest(null, null, null);
+    handler.handleRequest(null, null, null);
+
+    verify(httpClient, times(1)).sendAsync(any(), any());
+  }
+
+  @Test
+  void shouldAskForLatestReleaseWithEtagOfInstalledRelease()
+      throws IOException, InterruptedException {
+    handler.handleRequest(null, null, null);
+    when(gitHubResponse.statusCode()).thenReturn(304);
+
+    handler.handleRequest(null, null, null);
+
+    var captor = ArgumentCaptor.forClass(HttpRequest.class);
+    verify(httpClient, times(2)).send(captor.capture(), any());
+    var conditionalRequest = captor.getAllValues().get(1);
+    assertThat(
+        conditionalRequest.headers().firstValue("If-None-Match").orElseThrow(),
+        is(equalTo(RELEASE_ETAG)));
+    verify(httpClient, times(1)).sendAsync(any(), any());
+  }
+
+  @Test
+  void shouldFailWithoutUploadingWhenGitHubDoesNotAnswerWithRelease() {
+    var s3Client = spy(fakeS3Client);
+    handler = new InstallSwaggerUiHandler(httpClient, s3Client);
+    when(gitHubResponse.statusCode()).thenReturn(403);
+    when(gitHubResponse.body()).thenReturn("{\"message\":\"API rate limit exceeded\"}");
+
+    var exception =
+        assertThrows(IllegalStateException.class, () -> handler.handleRequest(null, null, null));
+
+    assertThat(exception.getMessage(), containsString("403"));
+    verify(httpClient, never()).sendAsync(any(), any());
+    verify(s3Client, never()).putObject(any(PutObjectRequest.class), any(RequestBody.class));
+  }
+
+  @Test
+  void shouldUploadOnlyAssetsThatDifferFromPublishedObjects()
+      throws IOException, NoSuchAlgorithmException {
+    var unchanged = "unchanged".getBytes(UTF_8);
+    var changed = "changed".getBytes(UTF_8);
+    var initializer = Utils.readResource(SWAGGER_INITIALIZER_JS).getBytes(UTF_8);
+    var release =
+        zip(
+            Map.of(
+                "swagger-ui-5.0.0/dist/unchanged.js",
+                unchanged,
+                "swagger-ui-5.0.0/dist/changed.js",
+                changed));
+    when(downloadResponse.body()).thenReturn(new ByteArrayInputStream(release));
+    var s3Client = mock(S3Client.class);
+    when(s3Client.listObjectsV2Paginator(any(ListObjectsV2Request.class)))
+        .thenAnswer(
+            invocation -> new ListObjectsV2Iterable(s3Client, invocation.getArgument(0)));
+    when(s3Client.listObjectsV2(any(ListObjectsV2Request.class)))
+        .thenReturn(
+            ListObjectsV2Response.builder()
+                .contents(
+                    published(SWAGGER_INITIALIZER_JS, initializer),
+                    published("unchanged.js", unchanged),
+                    published("changed.js", "published".getBytes(UTF_8)))
+                .build());
+
+    new InstallSwaggerUiHandler(httpClient, s3Client).handleRequest(null, null, null);
+
+    var captor = ArgumentCaptor.forClass(PutObjectRequest.class);
+    verify(s3Client, times(4)).putObject(captor.capture(), any(RequestBody.class));
+    assertThat(
+        captor.getAllValues().stream().map(PutObjectRequest::key).toList(),
+        containsInAnyOrder("changed.js", "changed.js", RELEASE_MARKER, RELEASE_MARKER));
+  }
+
+  @Test
+  void shouldCopyBinaryAssetsByteForByte() throws IOException {
+    var png = new byte[] {(byte) 0x89, 'P', 'N', 'G', (byte) 0xff, (byte) 0xfe, 0, (byte) 0xc3};
+    when(downloadResponse.body())
+        .thenReturn(new ByteArrayInputStream(zip("swagger-ui-5.0.0/dist/favicon.png", png)));
+
+    handler.handleRequest(null, null, null);
+
+    var request =
+        GetObjectRequest.builder().bucket(EXTERNAL_BUCKET_NAME).key("favicon.png").build();
+    assertThat(fakeS3Client.getObjectAsBytes(request).asByteArray(), is(equalTo(png)));
+  }
+
+  private static byte[] zip(String name, byte[] content) throws IOException {
+    return zip(Map.of(name, content));
+  }
+
+  private static byte[] zip(Map<String, byte[]> entries) throws IOException {
+    var output = new ByteArrayOutputStream();
+    try (var zip = new ZipOutputStream(output)) {
+      for (var entry : entries.entrySet()) {
+        zip.putNextEntry(new ZipEntry(entry.getKey()));
+        zip.write(entry.getValue());
+        zip.closeEntry();
+      }
+    }
+    return output.toByteArray();
+  }
+
+  private static S3Object published(String key, byte[] content) throws NoSuchAlgorithmException {
+    var md5 = HexFormat.of().formatHex(MessageDigest.getInstance("MD5").digest(content));
+    return S3Object.builder().key(key).eTag("\"" + md5 + "\"").build();
   }
 }
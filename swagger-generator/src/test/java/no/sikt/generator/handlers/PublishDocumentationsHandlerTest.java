@@ -1,6 +1,9 @@
 package no.sikt.generator.handlers;
 
 import static no.sikt.generator.handlers.TestUtils.setupTestcasesFromFiles;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -22,9 +25,8 @@ import software.amazon.awssdk.services.apigateway.model.CreateDocumentationVersi
 import software.amazon.awssdk.services.apigateway.model.DocumentationVersion;
 import software.amazon.awssdk.services.apigateway.model.GetDocumentationVersionsRequest;
 import software.amazon.awssdk.services.apigateway.model.GetDocumentationVersionsResponse;
-import software.amazon.awssdk.services.apigateway.model.GetStagesRequest;
-import software.amazon.awssdk.services.apigateway.model.GetStagesResponse;
-import software.amazon.awssdk.services.apigateway.model.Stage;
+import software.amazon.awssdk.services.apigateway.model.GetStageRequest;
+import software.amazon.awssdk.services.apigateway.model.GetStageResponse;
 import software.amazon.awssdk.services.apigateway.model.UpdateStageRequest;
 import software.amazon.awssdk.services.cloudfront.CloudFrontClient;
 
@@ -55,7 +57,7 @@ class PublishDocumentationsHandlerTest {
 
   @Test
   void shouldNotPerformCreateOrUpdateStageWhenDocVersionExistsAndItsAssociatedWithProdStage() {
-    var expectedHash = apiGatewayHighLevelClient.fetchDocumentationPartsHash("");
+    var expectedHash = apiGatewayHighLevelClient.fetchDocumentationFingerprint("", null);
     var expectedVersion = ApplicationConstants.VERSION_NAME + "-" + expectedHash;
 
     var listDocumentationVersionsResponse =
@@ -66,24 +68,19 @@ class PublishDocumentationsHandlerTest {
     when(apiGatewayAsyncClient.getDocumentationVersions(any(GetDocumentationVersionsRequest.class)))
         .thenReturn(CompletableFuture.completedFuture(listDocumentationVersionsResponse));
 
-    var getStagesResponse =
-        GetStagesResponse.builder()
-            .item(
-                List.of(
-                    Stage.builder()
-                        .stageName("Prod")
-                        .documentationVersion(expectedVersion)
-                        .build()))
-            .build();
+    var getStageResponse =
+        GetStageResponse.builder().stageName("Prod").documentationVersion(expectedVersion).build();
 
-    when(apiGatewayAsyncClient.getStages(any(GetStagesRequest.class)))
-        .thenReturn(CompletableFuture.completedFuture(getStagesResponse));
+    when(apiGatewayAsyncClient.getStage(any(GetStageRequest.class)))
+        .thenReturn(CompletableFuture.completedFuture(getStageResponse));
 
     handler.handleRequest(null, null, null);
 
     verify(apiGatewayAsyncClient, never())
         .createDocumentationVersion(any(CreateDocumentationVersionRequest.class));
     verify(apiGatewayAsyncClient, never()).updateStage(any(UpdateStageRequest.class));
+    verify(apiGatewayAsyncClient, never())
+        .getDocumentationVersions(any(GetDocumentationVersionsRequest.class));
   }
 
   @Test
@@ -101,7 +98,7 @@ class PublishDocumentationsHandlerTest {
 
   @Test
   void shouldPerformUpdateStageWhenDocVersionExistsButItsNotAssociated() {
-    var expectedHash = apiGatewayHighLevelClient.fetchDocumentationPartsHash("");
+    var expectedHash = apiGatewayHighLevelClient.fetchDocumentationFingerprint("", null);
     var listDocumentationVersionsResponse =
         GetDocumentationVersionsResponse.builder()
             .items(
@@ -117,4 +114,19 @@ class PublishDocumentationsHandlerTest {
 
     verify(apiGatewayAsyncClient).updateStage(any(UpdateStageRequest.class));
   }
+
+  @Test
+  void shouldFailAfterAllApisAreProcessedWhenPublishingAnApiFails() {
+    when(apiGatewayAsyncClient.getDocumentationVersions(any(GetDocumentationVersionsRequest.class)))
+        .thenReturn(
+            CompletableFuture.completedFuture(GetDocumentationVersionsResponse.builder().build()));
+    when(apiGatewayAsyncClient.createDocumentationVersion(
+            any(CreateDocumentationVersionRequest.class)))
+        .thenReturn(CompletableFuture.failedFuture(new IllegalStateException("boom")));
+
+    var exception =
+        assertThrows(IllegalStateException.class, () -> handler.handleRequest(null, null, null));
+
+    assertThat(exception.getMessage(), containsString("FAILED"));
+  }
 }
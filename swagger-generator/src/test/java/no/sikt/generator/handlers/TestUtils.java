@@ -7,12 +7,15 @@ import static no.sikt.generator.Utils.readResource;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.when;
 
+import io.swagger.v3.core.util.Json;
+import io.swagger.v3.core.util.Yaml;
 import io.swagger.v3.parser.OpenAPIV3Parser;
 import java.nio.file.Path;
 import java.time.Instant;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
+import no.sikt.generator.ExportFormat;
 import no.sikt.generator.Utils;
 import no.unit.nva.s3.S3Driver;
 import nva.commons.core.attempt.Try;
@@ -34,10 +37,9 @@ import software.amazon.awssdk.services.apigateway.model.GetExportRequest;
 import software.amazon.awssdk.services.apigateway.model.GetExportResponse;
 import software.amazon.awssdk.services.apigateway.model.GetRestApisRequest;
 import software.amazon.awssdk.services.apigateway.model.GetRestApisResponse;
-import software.amazon.awssdk.services.apigateway.model.GetStagesRequest;
-import software.amazon.awssdk.services.apigateway.model.GetStagesResponse;
+import software.amazon.awssdk.services.apigateway.model.GetStageRequest;
+import software.amazon.awssdk.services.apigateway.model.GetStageResponse;
 import software.amazon.awssdk.services.apigateway.model.RestApi;
-import software.amazon.awssdk.services.apigateway.model.Stage;
 import software.amazon.awssdk.services.apigateway.model.UpdateDocumentationVersionRequest;
 import software.amazon.awssdk.services.apigateway.model.UpdateDocumentationVersionResponse;
 import software.amazon.awssdk.services.apigateway.model.UpdateStageRequest;
@@ -126,17 +128,20 @@ public final class TestUtils {
   }
 
   private static void stubStages(ApiGatewayAsyncClient apiGatewayAsyncClient) {
-    var getStagesResponse =
-        GetStagesResponse.builder()
-            .item(
-                List.of(
-                    Stage.builder().stageName("Prod").documentationVersion("doc1").build(),
-                    Stage.builder().stageName("Stage").documentationVersion("doc1").build()))
-            .build();
     var updateStageResponse = UpdateStageResponse.builder().build();
 
-    when(apiGatewayAsyncClient.getStages(any(GetStagesRequest.class)))
-        .thenReturn(CompletableFuture.completedFuture(getStagesResponse));
+    when(apiGatewayAsyncClient.getStage(any(GetStageRequest.class)))
+        .thenAnswer(
+            invocation -> {
+              var stageName = invocation.getArgument(0, GetStageRequest.class).stageName();
+              var response =
+                  GetStageResponse.builder()
+                      .stageName(stageName)
+                      .deploymentId("deployment1")
+                      .documentationVersion("doc1")
+                      .build();
+              return CompletableFuture.completedFuture(response);
+            });
     when(apiGatewayAsyncClient.updateStage(any(UpdateStageRequest.class)))
         .thenReturn(CompletableFuture.completedFuture(updateStageResponse));
   }
@@ -191,14 +196,32 @@ public final class TestUtils {
     when(apiGatewayAsyncClient.getExport(any(GetExportRequest.class)))
         .thenAnswer(
             invocation -> {
-              var requestedId = invocation.getArgument(0, GetExportRequest.class).restApiId();
-              var fileContent = readResource(filePrefix + requestedId + ".yaml");
-              var sdkBody = SdkBytes.fromString(fileContent, UTF_8);
+              var request = invocation.getArgument(0, GetExportRequest.class);
+              var fileContent = readResource(filePrefix + request.restApiId() + ".yaml");
+              var export =
+                  ExportFormat.JSON.getContentType().equals(request.accepts())
+                      ? toJson(fileContent)
+                      : fileContent;
+              var sdkBody = SdkBytes.fromString(export, UTF_8);
               var response = GetExportResponse.builder().body(sdkBody).build();
               return CompletableFuture.completedFuture(response);
             });
   }
 
+  public static String toJson(String yaml) {
+    return Try.attempt(() -> Json.mapper().writeValueAsString(Yaml.mapper().readTree(yaml)))
+        .orElseThrow();
+  }
+
+  /** Reads the combined spec in the given format through the manifest that points to it. */
+  public static String readCombinedSpec(S3Driver s3Driver, ExportFormat format) {
+    var manifest = s3Driver.getFile(UnixPath.of("docs/openapi.manifest.json"));
+    var key =
+        Try.attempt(() -> Json.mapper().readTree(manifest).get(format.getExtension()).asText())
+            .orElseThrow();
+    return s3Driver.getFile(UnixPath.of(key));
+  }
+
   private static void stubCloudFront(CloudFrontClient cloudFrontClient) {
     var createInvalidationResponse = CreateInvalidationResponse.builder().build();
     when(cloudFrontClient.createInvalidation(any(CreateInvalidationRequest.class)))